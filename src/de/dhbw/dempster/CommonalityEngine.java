@@ -0,0 +1,114 @@
+package dempster;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Alternative way to combine {@link Measure}s for small frames.
+ * Every measure is turned into its commonality function using a fast moebius transform over all 2^size subsets of the frame.
+ * The dempster-rule then becomes a pointwise product of the commonality functions, which is transformed back into masses.
+ * The cost only depends on the size of the frame and the number of measures, not on the number of entries.
+ */
+class CommonalityEngine {
+
+    /** largest frame size the engine accepts, 2^20 subsets are held per function */
+    static final int MAX_FRAME_SIZE = 20;
+
+    /** masses below this value are treated as rounding noise of the transforms */
+    private static final double NEGLIGIBLE_MASS = 1e-12;
+
+    /** size of the frame */
+    private int size;
+
+    CommonalityEngine(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Estimates the cost of combining measures with the engine
+     * @param measureCount number of {@link Measure}s to be combined
+     * @return the estimated number of basic operations
+     */
+    long estimateCost(int measureCount) {
+        return (long) (measureCount + 1) * size * (1L << size);
+    }
+
+    /**
+     * Combines all given {@link Measure}s using the dempster-rule
+     * If the overall conflict exceeds 0.99 the measures are considered incompatible and an empty {@link Measure} (omega only) is returned
+     * @param measures the measures to be combined, at least 1
+     * @return the combined {@link Measure}
+     */
+    Measure combine(List<Measure> measures) {
+        double[] commonality = toCommonality(measures.get(0));
+        for (int i = 1; i < measures.size(); i++) {
+            double[] other = toCommonality(measures.get(i));
+            for (int subset = 0; subset < commonality.length; subset++) {
+                commonality[subset] = commonality[subset] * other[subset];
+            }
+        }
+
+        //moebius inversion: subtract the commonality of every superset differing in one element
+        double[] mass = commonality;
+        for (int bit = 1; bit < mass.length; bit <<= 1) {
+            for (int subset = 0; subset < mass.length; subset++) {
+                if ((subset & bit) == 0) {
+                    mass[subset] = mass[subset] - mass[subset | bit];
+                }
+            }
+        }
+
+        Measure retMeasure = new Measure(size);
+        //the mass left on the empty set is the conflict
+        double conflict = mass[0];
+        if (conflict <= 0.99d) {
+            double correction = 1.0d/(1.0d-conflict);
+            int omega = mass.length - 1;
+            for (int subset = 1; subset < omega; subset++) {
+                if (mass[subset] > NEGLIGIBLE_MASS) {
+                    retMeasure.addEntry(toBitSet(subset), mass[subset] * correction);
+                }
+            }
+        }
+        return retMeasure;
+    }
+
+    /**
+     * Calculates the commonality function of a {@link Measure}, i.e. for every subset the summed up mass of all its supersets
+     * @param measure the measure to be transformed
+     * @return the commonality of every subset, indexed by the subset's bit pattern
+     */
+    private double[] toCommonality(Measure measure) {
+        double[] commonality = new double[1 << size];
+        for (MeasureEntry entry : measure.getMeasureEntrys()) {
+            commonality[toSubset(entry.getBits())] += entry.getProbability();
+        }
+        for (int bit = 1; bit < commonality.length; bit <<= 1) {
+            for (int subset = 0; subset < commonality.length; subset++) {
+                if ((subset & bit) == 0) {
+                    commonality[subset] = commonality[subset] + commonality[subset | bit];
+                }
+            }
+        }
+        return commonality;
+    }
+
+    /**
+     * Turns packed values into a subset index
+     * @param values the packed values
+     * @return the bit pattern of the values as int
+     */
+    private int toSubset(BitSet values) {
+        long[] words = values.toLongArray();
+        return words.length == 0 ? 0 : (int) words[0];
+    }
+
+    /**
+     * Turns a subset index into packed values
+     * @param subset the bit pattern of the subset
+     * @return the packed values
+     */
+    private BitSet toBitSet(int subset) {
+        return BitSet.valueOf(new long[] {subset});
+    }
+}
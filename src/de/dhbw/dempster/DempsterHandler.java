@@ -1,7 +1,17 @@
 package dempster;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Class to hold a collection of {@links Measure} and allow dempster-shafer-operations.
@@ -17,6 +27,49 @@ public class DempsterHandler{
     /** {@link Measure}s held by the handler */
     private List<Measure> measures = new ArrayList<Measure>();
 
+    /** number of {@link Measure}s below which parallel accumulation falls back to the serial one */
+    private int parallelThreshold = 8;
+
+    /** pool used to split single combinations of large {@link Measure}s, null to combine on the calling thread */
+    private ForkJoinPool combinationPool;
+
+    /** number of entry pairs from which on a single combination is split across the combination pool */
+    private int combinationThreshold = 1 << 16;
+
+    /** {@link Engine} used to accumulate all measures */
+    private Engine engine = Engine.PAIRWISE;
+
+    /** maximum number of entries besides omega a combined {@link Measure} may keep, -1 to keep all */
+    private int maxEntries = -1;
+
+    /** how entries are dropped when a combined {@link Measure} has more than maxEntries entries */
+    private Measure.Approximation approximation = Measure.Approximation.TO_OMEGA;
+
+    /** summed up probability moved by approximations since the handler was created */
+    private double approximatedProbability = 0.0d;
+
+    /**
+     * Order in which {@link #accumulateAllMeasures(ReductionOrder)} combines the {@link Measure}s
+     */
+    public enum ReductionOrder {
+        /** combine the measures pairwise in the order they were added and put the results at the end, forming a balanced tree */
+        BALANCED,
+        /** always combine the 2 measures with the fewest entries, keeping the intermediate measures small */
+        SMALLEST_FIRST
+    }
+
+    /**
+     * Engine used by {@link #accumulateAllMeasures(ReductionOrder)} to combine the {@link Measure}s
+     */
+    public enum Engine {
+        /** choose the cheaper engine based on frame size and number of entries */
+        AUTO,
+        /** intersect the entries of 2 measures at a time */
+        PAIRWISE,
+        /** multiply the commonality functions of all measures, only available for frames up to 20 alternatives */
+        COMMONALITY
+    }
+
     public DempsterHandler (int size) {
         this.size = size;
     }
@@ -32,25 +85,152 @@ public class DempsterHandler{
     }
 
     /**
-     * Recursively accumulates all {@link Measure}s held by the handler
+     * Accumulates all {@link Measure}s held by the handler, combining them pairwise in a balanced tree
      * After calling this you should be left with 1 final {@link Measure}
      */
     public void accumulateAllMeasures() {
+        this.accumulateAllMeasures(ReductionOrder.BALANCED);
+    }
+
+    /**
+     * Iteratively accumulates all {@link Measure}s held by the handler in the given order.
+     * As the dempster-rule is associative and commutative the order otherwise only influences how big the intermediate {@link Measure}s get,
+     * but a pairwise combination whose conflict exceeds 0.99 results in an empty {@link Measure}. Once this cutoff applies to any step, the result depends on the order
+     * After calling this you should be left with 1 final {@link Measure}
+     * @param order the {@link ReductionOrder} in which the measures are combined
+     */
+    public void accumulateAllMeasures(ReductionOrder order) {
         if (measures.size() < 2) {
             //no measures or just 1 left. Abort
             return;
         }
+        Measure result;
+        if (this.useCommonalityEngine()) {
+            result = new CommonalityEngine(this.size).combine(this.measures);
+        }
         else {
-            //take 2 measures, remove them from list
-            Measure measure1 = measures.get(0);
-            Measure measure2 = measures.get(1);
-            this.measures.remove(measure1);
-            this.measures.remove(measure2);
-            //accumulate measures, add to list
-            this.measures.add(this.accumulateMeasures(measure1, measure2));
+            result = this.reduce(this.measures, order);
+        }
+        this.measures.clear();
+        this.measures.add(result);
+    }
+
+    /**
+     * Accumulates all {@link Measure}s held by the handler on the given {@link ForkJoinPool}.
+     * The list of measures is split in halves which are accumulated as separate tasks and combined afterwards.
+     * Lists with less measures than the parallel threshold are accumulated serially.
+     * The halves group the combinations differently than {@link #accumulateAllMeasures()}, so the results only match as long as no pairwise combination
+     * exceeds the conflict cutoff (see {@link #accumulateAllMeasures(ReductionOrder)})
+     * After calling this you should be left with 1 final {@link Measure}
+     * @param pool the pool running the accumulation tasks
+     */
+    public void accumulateAllMeasuresParallel(ForkJoinPool pool) {
+        if (measures.size() < this.parallelThreshold || this.useCommonalityEngine()) {
             this.accumulateAllMeasures();
+            return;
+        }
+        Measure result = pool.invoke(new AccumulationTask(this.measures));
+        this.measures.clear();
+        this.measures.add(result);
+    }
+
+    /**
+     * Sets the number of {@link Measure}s below which {@link #accumulateAllMeasuresParallel(ForkJoinPool)} does not split the work any further
+     * @param parallelThreshold the threshold, at least 2
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = Math.max(2, parallelThreshold);
+    }
+
+    /**
+     * Sets the {@link Engine} used to accumulate all measures, {@link Engine#PAIRWISE} by default. The commonality engine is only used for frames up to 20 alternatives.
+     * It drops masses below 1e-12 that are left over by its transforms and does not apply the approximation set by {@link #setApproximation(int, Measure.Approximation)}
+     * @param engine the engine
+     */
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Decides whether the measures are accumulated by the {@link CommonalityEngine}.
+     * Its cost is fixed by the frame size, while pairwise combination grows with the number of entries of the intermediate measures.
+     * @return {@link true} if the commonality engine should be used
+     */
+    private boolean useCommonalityEngine() {
+        if (this.engine == Engine.PAIRWISE || this.size > CommonalityEngine.MAX_FRAME_SIZE) {
+            return false;
+        }
+        if (this.engine == Engine.COMMONALITY) {
+            return true;
+        }
+        //estimate the pairwise cost of combining the measures one after another
+        long subsets = 1L << this.size;
+        long pairwiseCost = 0;
+        long accumulatedEntries = this.measures.get(0).getMeasureEntrys().size();
+        for (int i = 1; i < this.measures.size(); i++) {
+            long entries = this.measures.get(i).getMeasureEntrys().size();
+            pairwiseCost = pairwiseCost + accumulatedEntries * entries;
+            accumulatedEntries = Math.min(accumulatedEntries * entries, subsets);
+        }
+        return new CommonalityEngine(this.size).estimateCost(this.measures.size()) < pairwiseCost;
+    }
+
+    /**
+     * Combines a non-empty list of {@link Measure}s into a single one in the given order
+     * @param measureList the {@link Measure}s to be combined. The list is not modified
+     * @param order the {@link ReductionOrder} in which the measures are combined
+     * @return the resulting {@link Measure}
+     */
+    private Measure reduce(List<Measure> measureList, ReductionOrder order) {
+        Queue<Measure> queue;
+        if (order == ReductionOrder.SMALLEST_FIRST) {
+            queue = new PriorityQueue<Measure>(measureList.size(), new Comparator<Measure>() {
+                public int compare(Measure measure1, Measure measure2) {
+                    return Integer.compare(measure1.getMeasureEntrys().size(), measure2.getMeasureEntrys().size());
+                }
+            });
+        }
+        else {
+            queue = new ArrayDeque<Measure>();
+        }
+        queue.addAll(measureList);
+
+        while (queue.size() > 1) {
+            //take 2 measures, accumulate them and put the result back
+            Measure measure1 = queue.poll();
+            Measure measure2 = queue.poll();
+            queue.add(this.accumulateMeasures(measure1, measure2));
+        }
+        return queue.poll();
+    }
+
+    /**
+     * Task accumulating a part of the {@link Measure}s held by the handler.
+     * Splits its part in halves until it is smaller than the parallel threshold, combining the results of the halves regardless of the serial pairing
+     */
+    private class AccumulationTask extends RecursiveTask<Measure> {
+
+        private static final long serialVersionUID = 1L;
+
+        /** {@link Measure}s to be accumulated by this task */
+        private List<Measure> measureList;
+
+        AccumulationTask(List<Measure> measureList) {
+            this.measureList = measureList;
         }
 
+        @Override
+        protected Measure compute() {
+            if (measureList.size() < parallelThreshold) {
+                return reduce(measureList, ReductionOrder.BALANCED);
+            }
+            int middle = measureList.size() / 2;
+            AccumulationTask left = new AccumulationTask(measureList.subList(0, middle));
+            AccumulationTask right = new AccumulationTask(measureList.subList(middle, measureList.size()));
+            left.fork();
+            Measure rightResult = right.compute();
+            return accumulateMeasures(left.join(), rightResult);
+        }
     }
 
     /**
@@ -64,6 +244,10 @@ public class DempsterHandler{
 
     /**
      * Accumulates 2 {@link Measure}s, taking conflicts into account
+     * Every pair of entries is intersected only once: the unnormalized masses of the intersections and the conflict are
+     * gathered in the same pass, the correction is applied once at the end.
+     * If a combination pool is set and the number of entry pairs reaches the combination threshold, the pairs are split
+     * across the pool and the partial results are merged before the correction.
      * @param measure1 first {@link Measure}
      * @param measure2 second {@link Measure}
      * @return resulting {@link Measure}
@@ -71,92 +255,202 @@ public class DempsterHandler{
     private Measure accumulateMeasures(Measure measure1, Measure measure2) {
 
         Measure retMeasure = new Measure(this.size);
-        double conflict = getConflict(measure1,measure2);
+        List<MeasureEntry> entries1 = measure1.getMeasureEntrys();
+        List<MeasureEntry> entries2 = measure2.getMeasureEntrys();
+
+        PartialCombination combination;
+        if (this.combinationPool != null && entries1.size() > 1 && (long) entries1.size() * entries2.size() >= this.combinationThreshold) {
+            CombinationTask task = new CombinationTask(entries1, 0, entries1.size(), entries2);
+            //tasks already running inside the combination pool (e.g. parallel accumulation) just join in
+            combination = ForkJoinTask.getPool() == this.combinationPool ? task.invoke() : this.combinationPool.invoke(task);
+        }
+        else {
+            combination = this.combineEntries(entries1, 0, entries1.size(), entries2);
+        }
 
-        if (conflict <= 0.99d)
+        if (combination.conflict <= 0.99d)
         {
-            double correction = 1.0d/(1.0d-conflict);
-            List<MeasureEntry> entries1 = measure1.getMeasureEntrys();
-            List<MeasureEntry> entries2 = measure2.getMeasureEntrys();
-
-            for (MeasureEntry entry1 : entries1){
-                for (MeasureEntry entry2 : entries2){
-                    List<Integer> intersection = getIntersection(entry1, entry2);
-                    double value = entry1.getProbability() * entry2.getProbability() * correction;
-                    if (value > 0.0d && !entryIsEmpty(intersection) &&!isOmegaEntry(intersection)) {
-                        retMeasure.addEntry(intersection, value);
-                    }
-                }
+            double correction = 1.0d/(1.0d-combination.conflict);
+            for (MeasureEntry entry : combination.masses.values()) {
+                retMeasure.addEntry(entry.getBits(), entry.getProbability() * correction);
             }
         }
+        if (this.maxEntries >= 0) {
+            this.addApproximatedProbability(retMeasure.approximate(this.maxEntries, this.approximation));
+        }
         return retMeasure;
     }
 
     /**
-     * Checks if a List contains only 1s, identifying the omega-entry
-     * @param entryValues the list to be checked
-     * @return {@link true} if the List contains only 1s
+     * Intersects a range of the first entries with all of the second entries and gathers the unnormalized masses and the conflict
+     * @param entries1 entries of the first {@link Measure}
+     * @param from first index of entries1 to be used
+     * @param to index behind the last index of entries1 to be used
+     * @param entries2 entries of the second {@link Measure}
+     * @return the unnormalized {@link PartialCombination} of the range
      */
-    private boolean isOmegaEntry(List<Integer> entryValues) {
-        for (Integer entry : entryValues) {
-            if (entry != 1) {
-                return false;
+    private PartialCombination combineEntries(List<MeasureEntry> entries1, int from, int to, List<MeasureEntry> entries2) {
+        PartialCombination combination = new PartialCombination();
+        for (MeasureEntry entry1 : entries1.subList(from, to)){
+            for (MeasureEntry entry2 : entries2){
+                BitSet intersection = getIntersection(entry1, entry2);
+                double value = entry1.getProbability() * entry2.getProbability();
+                if (entryIsEmpty(intersection)) {
+                    combination.conflict = combination.conflict + value;
+                }
+                else if (value > 0.0d && !isOmegaEntry(intersection)) {
+                    combination.addMass(intersection, value);
+                }
             }
         }
-        return true;
+        return combination;
     }
 
     /**
-     * Checks if a List contains only 0s, identifying it as an empty List as a result of a conflict
-     * @param entryValues the list to be checked
-     * @return {@link true} if the List contains only 0s
+     * Sets a pool that is used to split a single combination of 2 large {@link Measure}s across threads.
+     * @param combinationPool the pool or null to always combine 2 measures on the calling thread
+     * @param combinationThreshold number of entry pairs (entries of measure 1 times entries of measure 2) from which on a combination is split
      */
-    private boolean entryIsEmpty(List<Integer> entryValues) {
-        for (Integer entry : entryValues) {
-            if (entry != 0) {
-                return false;
-            }
-        }
-        return true;
+    public void setCombinationPool(ForkJoinPool combinationPool, int combinationThreshold) {
+        this.combinationPool = combinationPool;
+        this.combinationThreshold = Math.max(1, combinationThreshold);
     }
 
     /**
-     * Creates an intersection of 2 {@link MeasureEntry}s
-     * @param entry1 first {@MeasureEntry}
-     * @param entry2 second {@MeasureEntry}
-     * @return a List representing the intersection. Can be used to create a new {@link MeasureEntry}
-     */
-    private List<Integer> getIntersection(MeasureEntry entry1, MeasureEntry entry2) {
-        List<Integer> retList = new ArrayList<Integer>();
-        for(int i = 0; i<this.size; i++) {
-            int i1 = entry1.getValues().get(i);
-            int i2 = entry2.getValues().get(i);
-            if ((i1 + i2) == 2) {
-                retList.add(1);
+     * Limits the number of entries every combined {@link Measure} may keep besides the omega-entry, giving an upper bound for the cost of the next combination.
+     * Entries with the lowest probability are dropped, see {@link Measure#approximate(int, Measure.Approximation)}
+     * @param maxEntries maximum number of entries besides omega, -1 to switch the approximation off
+     * @param approximation where the probability of dropped entries goes
+     */
+    public void setApproximation(int maxEntries, Measure.Approximation approximation) {
+        this.maxEntries = maxEntries;
+        this.approximation = approximation;
+    }
+
+    /**
+     * Returns the probability moved by approximations so far
+     * @return the summed up probability of all dropped entries
+     */
+    public synchronized double getApproximatedProbability() {
+        return this.approximatedProbability;
+    }
+
+    /**
+     * Adds to the probability moved by approximations. Synchronized as combinations may run in parallel
+     * @param probability the moved probability
+     */
+    private synchronized void addApproximatedProbability(double probability) {
+        this.approximatedProbability = this.approximatedProbability + probability;
+    }
+
+    /**
+     * Unnormalized result of combining (a part of) the entries of 2 {@link Measure}s.
+     * Holds the masses of the non-empty, non-omega intersections in order of their first appearance and the conflict
+     */
+    private class PartialCombination {
+
+        /** unnormalized masses by their packed values */
+        private Map<BitSet, MeasureEntry> masses = new LinkedHashMap<BitSet, MeasureEntry>();
+
+        /** summed up mass of all empty intersections */
+        private double conflict = 0.0d;
+
+        /**
+         * Adds mass to the given set, creating an entry for it if needed
+         * @param values packed values of the set. Is kept as key if the set is new
+         * @param mass the mass to be added
+         */
+        void addMass(BitSet values, double mass) {
+            MeasureEntry existing = masses.get(values);
+            if (existing == null) {
+                masses.put(values, new MeasureEntry(size, values, mass));
             }
             else {
-                retList.add(0);
+                existing.setProbability(existing.getProbability() + mass);
+            }
+        }
+
+        /**
+         * Merges another partial result into this one
+         * @param other the {@link PartialCombination} to be merged
+         */
+        void merge(PartialCombination other) {
+            for (MeasureEntry entry : other.masses.values()) {
+                this.addMass(entry.getBits(), entry.getProbability());
             }
+            this.conflict = this.conflict + other.conflict;
         }
-        return retList;
     }
 
     /**
-     * Calculates the conflict-value of an accumulation of two {@link Measure}s
-     * @param measure1 first {@link Measure}
-     * @param measure2 second {@link Measure}
-     * @return the value of the conflict
+     * Task combining a range of the entries of the first {@link Measure} with all entries of the second one.
+     * Splits its range in halves until the number of entry pairs drops below the combination threshold
      */
-    private double getConflict(Measure measure1, Measure measure2) {
-        double conflict = 0.0d;
-        for (MeasureEntry me1: measure1.getMeasureEntrys())
-        {
-            for (MeasureEntry me2 : measure2.getMeasureEntrys()) {
-                if (this.entryIsEmpty(this.getIntersection(me1, me2))) {
-                    conflict = conflict + (me1.getProbability() * me2.getProbability());
-                }
+    private class CombinationTask extends RecursiveTask<PartialCombination> {
+
+        private static final long serialVersionUID = 1L;
+
+        /** entries of the first {@link Measure} */
+        private List<MeasureEntry> entries1;
+
+        /** first index of entries1 handled by this task */
+        private int from;
+
+        /** index behind the last index of entries1 handled by this task */
+        private int to;
+
+        /** entries of the second {@link Measure} */
+        private List<MeasureEntry> entries2;
+
+        CombinationTask(List<MeasureEntry> entries1, int from, int to, List<MeasureEntry> entries2) {
+            this.entries1 = entries1;
+            this.from = from;
+            this.to = to;
+            this.entries2 = entries2;
+        }
+
+        @Override
+        protected PartialCombination compute() {
+            if (to - from < 2 || (long) (to - from) * entries2.size() < combinationThreshold) {
+                return combineEntries(entries1, from, to, entries2);
             }
+            int middle = (from + to) >>> 1;
+            CombinationTask left = new CombinationTask(entries1, from, middle, entries2);
+            CombinationTask right = new CombinationTask(entries1, middle, to, entries2);
+            right.fork();
+            PartialCombination combination = left.compute();
+            combination.merge(right.join());
+            return combination;
         }
-        return conflict;
+    }
+
+    /**
+     * Checks if a set contains only 1s, identifying the omega-entry
+     * @param entryValues the packed values to be checked
+     * @return {@link true} if the set contains only 1s
+     */
+    private boolean isOmegaEntry(BitSet entryValues) {
+        return entryValues.nextClearBit(0) >= this.size;
+    }
+
+    /**
+     * Checks if a set contains only 0s, identifying it as an empty set as a result of a conflict
+     * @param entryValues the packed values to be checked
+     * @return {@link true} if the set contains only 0s
+     */
+    private boolean entryIsEmpty(BitSet entryValues) {
+        return entryValues.isEmpty();
+    }
+
+    /**
+     * Creates an intersection of 2 {@link MeasureEntry}s by and-ing their packed values word by word
+     * @param entry1 first {@MeasureEntry}
+     * @param entry2 second {@MeasureEntry}
+     * @return a set representing the intersection. Can be used to create a new {@link MeasureEntry}
+     */
+    private BitSet getIntersection(MeasureEntry entry1, MeasureEntry entry2) {
+        BitSet retSet = (BitSet) entry1.getBits().clone();
+        retSet.and(entry2.getBits());
+        return retSet;
     }
 }
@@ -1,7 +1,13 @@
 package dempster;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Class to represent a single measure within a Dempster-Schaefer calculation.
@@ -19,15 +25,26 @@ public class Measure{
     /** reference to the entry in the entry-list, thast represents the omega-remainder */
     private MeasureEntry omegaEntry;
 
+    /** index of all entries except the omega-entry by their packed values, so existing entries are found without scanning the list */
+    private Map<BitSet, MeasureEntry> entryIndex = new HashMap<BitSet, MeasureEntry>();
+
+    /**
+     * Ways of getting rid of low-mass entries in {@link #approximate(int, Approximation)}
+     */
+    public enum Approximation {
+        /** the mass of the dropped entries is moved to the omega-entry */
+        TO_OMEGA,
+        /** the mass of the dropped entries is moved to a single entry holding the union of their sets */
+        TO_UNION
+    }
+
     public Measure(int size) {
         this.size = size;
         //set the omega-Entry to all 1
-        List<Integer> omegaEntryList = new ArrayList<Integer>();
-        for (int i = 0 ; i < size; i++) {
-            omegaEntryList.add(1);
-        }
+        BitSet omegaEntryBits = new BitSet(size);
+        omegaEntryBits.set(0, size);
 
-        this.omegaEntry = new MeasureEntry(this.size, omegaEntryList, 1.0);
+        this.omegaEntry = new MeasureEntry(this.size, omegaEntryBits, 1.0);
         this.entries.add(omegaEntry);
     }
 
@@ -38,18 +55,69 @@ public class Measure{
      */
     public void addEntry(List<Integer> entry, double probability) {
         if (entry.size() == this.size) {
-            //check if entry already exists
-            for (MeasureEntry me : entries) {
-                if (isSameEntry(me.getValues(), entry)) {
-                    me.setProbability(me.getProbability() + probability);
-                    this.omegaEntry.setProbability(this.omegaEntry.getProbability()-probability);
-                    return;
-                }
-            }
-            //entry does not exist yet?
-            entries.add(new MeasureEntry(size, entry, probability));
+            this.addEntry(MeasureEntry.toBitSet(entry), probability);
+        }
+    }
+
+    /**
+     * Add an entry for the Measure by submitting the packed entry-values and the probability of the entry
+     * @param entry packed entry-values, no bit at or above the size of the Measure may be set. The {@link BitSet} is copied if a new entry is created
+     * @param probability probability of the entry
+     */
+    public void addEntry(BitSet entry, double probability) {
+        //check if entry already exists
+        MeasureEntry me = this.omegaEntry.getBits().equals(entry) ? this.omegaEntry : entryIndex.get(entry);
+        if (me != null) {
+            me.setProbability(me.getProbability() + probability);
             this.omegaEntry.setProbability(this.omegaEntry.getProbability()-probability);
+            return;
+        }
+        //entry does not exist yet?
+        BitSet key = (BitSet) entry.clone();
+        me = new MeasureEntry(size, key, probability);
+        entries.add(me);
+        entryIndex.put(key, me);
+        this.omegaEntry.setProbability(this.omegaEntry.getProbability()-probability);
+    }
+
+    /**
+     * Reduces the Measure to at most the given number of entries besides the omega-entry by dropping the entries with the lowest probability.
+     * Their probability is moved according to the given {@link Approximation}. When moving to their union, one entry less is kept to make room for the union
+     * @param maxEntries maximum number of entries besides the omega-entry
+     * @param approximation where the probability of the dropped entries goes
+     * @return the probability that was moved, 0.0 if nothing had to be dropped
+     */
+    public double approximate(int maxEntries, Approximation approximation) {
+        maxEntries = Math.max(0, maxEntries);
+        if (entries.size() - 1 <= maxEntries) {
+            return 0.0d;
+        }
+        int keep = (approximation == Approximation.TO_UNION && maxEntries > 0) ? maxEntries - 1 : maxEntries;
+
+        //sort the entries by descending probability, the omega-entry is never dropped
+        List<MeasureEntry> ranked = new ArrayList<MeasureEntry>(entries.subList(1, entries.size()));
+        Collections.sort(ranked, new Comparator<MeasureEntry>() {
+            public int compare(MeasureEntry entry1, MeasureEntry entry2) {
+                return Double.compare(entry2.getProbability(), entry1.getProbability());
+            }
+        });
+
+        double movedProbability = 0.0d;
+        BitSet union = new BitSet(size);
+        for (MeasureEntry dropped : ranked.subList(keep, ranked.size())) {
+            movedProbability = movedProbability + dropped.getProbability();
+            union.or(dropped.getBits());
+            entryIndex.remove(dropped.getBits());
+        }
+        entries.retainAll(new HashSet<MeasureEntry>(ranked.subList(0, keep)));
+        entries.add(0, omegaEntry);
+
+        //hand the probability back to omega, moving it to the union takes it away again
+        this.omegaEntry.setProbability(this.omegaEntry.getProbability() + movedProbability);
+        if (approximation == Approximation.TO_UNION && maxEntries > 0) {
+            this.addEntry(union, movedProbability);
         }
+        return movedProbability;
     }
 
     /**
@@ -61,6 +129,14 @@ public class Measure{
         return entries;
     }
 
+    /**
+     * Returns the size of the Measure
+     * @return the size, matching the number of alternatives
+     */
+    public int getSize() {
+        return size;
+    }
+
     /**
      * Calculates the belief for a given index
      * @param index the index
@@ -70,17 +146,10 @@ public class Measure{
         double belief = 0.0;
         if(index < this.size) {
             for (MeasureEntry entry : this.entries) {
-                List<Integer> valueList = entry.getValues();
-                if (valueList.get(index) == 1) {
-                    //for belief of a single entry, all other positions must be "0"
-                    boolean isBeliefMeasureEntry = true;
-                    for (int i=0; i<valueList.size(); i++) {
-                        if (i != index && valueList.get(i) != 0) {
-                            isBeliefMeasureEntry = false;
-                        }
-                    }
-                    if (isBeliefMeasureEntry)
-                        belief = belief + entry.getProbability();
+                BitSet bits = entry.getBits();
+                //for belief of a single entry, all other positions must be "0"
+                if (bits.get(index) && bits.cardinality() == 1) {
+                    belief = belief + entry.getProbability();
                 }
             }
         }
@@ -97,7 +166,7 @@ public class Measure{
         if(index < this.size) {
             for (MeasureEntry entry : this.entries) {
                 // sum up all the MeasuerEntrys that have a "1" at the index's position
-                if (entry.getValues().get(index) == 1) {
+                if (entry.getBits().get(index)) {
                     plausability = plausability + entry.getProbability();
                 }
             }
@@ -113,26 +182,97 @@ public class Measure{
         return 1 - this.calculatePlausability(index);
     }
 
-    public String toString() {
-        String retString = "";
-        for (MeasureEntry entry: entries) {
-            retString = retString + entry.toString();
+    /**
+     * Calculates the belief for all indices in a single pass over the entries
+     * @return the belief for every index of the Measure
+     */
+    public double[] calculateBeliefs() {
+        double[] beliefs = new double[this.size];
+        for (MeasureEntry entry : this.entries) {
+            BitSet bits = entry.getBits();
+            //only entries with exactly one "1" count towards a belief
+            int index = bits.nextSetBit(0);
+            if (index >= 0 && index < this.size && bits.nextSetBit(index + 1) < 0) {
+                beliefs[index] = beliefs[index] + entry.getProbability();
+            }
         }
-        return retString;
+        return beliefs;
+    }
+
+    /**
+     * Calculates the plausability for all indices in a single pass over the entries
+     * @return the plausability for every index of the Measure
+     */
+    public double[] calculatePlausabilities() {
+        double[] plausabilities = new double[this.size];
+        for (MeasureEntry entry : this.entries) {
+            BitSet bits = entry.getBits();
+            for (int index = bits.nextSetBit(0); index >= 0 && index < this.size; index = bits.nextSetBit(index + 1)) {
+                plausabilities[index] = plausabilities[index] + entry.getProbability();
+            }
+        }
+        return plausabilities;
+    }
+
+    /**
+     * Calculates the doubt for all indices in a single pass over the entries
+     * @return the doubt for every index of the Measure
+     */
+    public double[] calculateDoubts() {
+        double[] doubts = this.calculatePlausabilities();
+        for (int i = 0; i < doubts.length; i++) {
+            doubts[i] = 1 - doubts[i];
+        }
+        return doubts;
     }
 
     /**
-     * Checks whether 2 Lists contain the same entries.
-     * @param list1 first list
-     * @param list2 second list
-     * @return {@link true} is lists contain same entries
+     * Determines the index with the highest plausability. On a tie the lowest index wins
+     * @return the index with the highest plausability or 0 if no index has a plausability above 0
      */
-    private boolean isSameEntry(List<Integer> list1, List<Integer> list2) {
-        for (int i = 0; i < this.size; i++) {
-            if (list1.get(i) != list2.get(i)) {
-                return false;
+    public int getMostPlausibleIndex() {
+        double[] plausabilities = this.calculatePlausabilities();
+        double highestPlausability = 0.0;
+        int highestIndex = 0;
+        for (int i = 0; i < plausabilities.length; i++) {
+            if (highestPlausability < plausabilities[i]) {
+                highestPlausability = plausabilities[i];
+                highestIndex = i;
             }
         }
-        return true;
+        return highestIndex;
+    }
+
+    /**
+     * Determines the k indices with the highest plausability, ordered from the highest to the lowest. On a tie the lower index comes first
+     * @param k number of indices to be returned
+     * @return the indices, at most k and at most the size of the Measure
+     */
+    public int[] getMostPlausibleIndices(int k) {
+        double[] plausabilities = this.calculatePlausabilities();
+        int[] topIndices = new int[Math.max(0, Math.min(k, this.size))];
+        int found = 0;
+        for (int i = 0; i < plausabilities.length; i++) {
+            //find the position of the index among the best ones so far and shift the worse ones back
+            int position = found;
+            while (position > 0 && plausabilities[topIndices[position - 1]] < plausabilities[i]) {
+                position--;
+            }
+            if (position < topIndices.length) {
+                int last = Math.min(found, topIndices.length - 1);
+                System.arraycopy(topIndices, position, topIndices, position + 1, last - position);
+                topIndices[position] = i;
+                found = Math.min(found + 1, topIndices.length);
+            }
+        }
+        return topIndices;
+    }
+
+    public String toString() {
+        String retString = "";
+        for (MeasureEntry entry: entries) {
+            retString = retString + entry.toString();
+        }
+        return retString;
     }
 }
\ No newline at end of file
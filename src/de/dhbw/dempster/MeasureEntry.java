@@ -1,10 +1,12 @@
 package dempster;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 /**
- * Class to represent an entry within a measure. Contains a List of values (0 or 1), a fixed size and the probability of the entry.
+ * Class to represent an entry within a measure. Contains a set of values (0 or 1), a fixed size and the probability of the entry.
+ * The values are stored as a packed {@link BitSet}, bit i being set means the value at position i is 1.
  * @author Ben F�rnrohr
  */
 public class MeasureEntry{
@@ -12,20 +14,33 @@ public class MeasureEntry{
     /** size of the entry, should match that of the holding {@link Measure} */
     private int size;
 
-    /** List of values, containing 0s and 1s */
-    private List<Integer> values = new ArrayList<Integer>();
+    /** packed values, a set bit represents a 1, a cleared bit a 0 */
+    private BitSet values;
 
     /** probability of a single measure */
     private double probability;
 
     public MeasureEntry(int size, List<Integer> values, double probability) {
+        this(size, toBitSet(values), probability);
+    }
+
+    public MeasureEntry(int size, BitSet values, double probability) {
         this.size = size;
         this.values = values;
         this.probability = probability;
     }
 
-    /** returns the List of values in the entry */
+    /** returns the List of values in the entry. The List is created from the packed values on every call */
     public List<Integer> getValues() {
+        List<Integer> retList = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            retList.add(values.get(i) ? 1 : 0);
+        }
+        return retList;
+    }
+
+    /** returns the packed values of the entry. Must not be modified by the caller */
+    public BitSet getBits() {
         return values;
     }
 
@@ -34,9 +49,9 @@ public class MeasureEntry{
         return probability;
     }
 
-    /** sets the List of values in the entry */
+    /** sets the List of values in the entry. Must not be used on entries already held by a {@link Measure}, as those are indexed by their values */
     public void setValues(List<Integer> values) {
-        this.values = values;
+        this.values = toBitSet(values);
     }
 
     /** sets the probability of the entry */
@@ -44,12 +59,27 @@ public class MeasureEntry{
         this.probability = probability;
     }
 
+    /**
+     * Converts a List of 0s and 1s into a packed {@link BitSet}
+     * @param values the list to be converted
+     * @return a {@link BitSet} with every position set that holds a 1 in the List
+     */
+    static BitSet toBitSet(List<Integer> values) {
+        BitSet bits = new BitSet(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) == 1) {
+                bits.set(i);
+            }
+        }
+        return bits;
+    }
+
     public String toString() {
-        String retString = "Set: ";
+        StringBuilder retString = new StringBuilder("Set: ");
         for (int i = 0; i < size; i++) {
-            retString = retString + (values.get(i)+ " ");
+            retString.append(values.get(i) ? 1 : 0).append(" ");
         }
-        retString = retString + ("probability: " + probability + "\n");
-        return retString;
+        retString.append("probability: " + probability + "\n");
+        return retString.toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package dempster;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class to combine simple support functions, i.e. measures that consist of exactly one focal set plus the omega-remainder.
+ * Instead of creating a {@link Measure} per support and combining those pairwise, the combiner keeps a single map of
+ * unnormalized masses. Every support splits each mass into the part that stays on its set and the part moved to the intersection
+ * with the support's focal set. The conflict is corrected once at the end.
+ */
+public class SimpleSupportCombiner {
+
+    /** size of the focal sets. Should match the number of alternatives */
+    private int size;
+
+    /** the supports to be combined, each one given by its focal set and its evidence */
+    private List<MeasureEntry> supports = new ArrayList<MeasureEntry>();
+
+    public SimpleSupportCombiner(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Adds a simple support function given by a List of 0s and 1s and the evidence for it
+     * @param focalSet List of values. Should be the same size of the combiner, otherwise the support is ignored
+     * @param evidence the mass assigned to the focal set, the remainder goes to omega
+     */
+    public void addSupport(List<Integer> focalSet, double evidence) {
+        if (focalSet.size() == this.size) {
+            this.addSupport(MeasureEntry.toBitSet(focalSet), evidence);
+        }
+    }
+
+    /**
+     * Adds a simple support function given by packed values and the evidence for it
+     * @param focalSet packed values, no bit at or above the size of the combiner may be set. Is not modified
+     * @param evidence the mass assigned to the focal set, the remainder goes to omega. Supports without positive evidence are ignored
+     */
+    public void addSupport(BitSet focalSet, double evidence) {
+        if (evidence > 0.0d) {
+            this.supports.add(new MeasureEntry(size, focalSet, evidence));
+        }
+    }
+
+    /**
+     * Combines all supports added so far using the dempster-rule
+     * If the overall conflict exceeds 0.99 the supports are considered incompatible and an empty {@link Measure} (omega only) is returned
+     * @return the combined {@link Measure}
+     */
+    public Measure combine() {
+        BitSet omega = new BitSet(size);
+        omega.set(0, size);
+
+        //unnormalized masses of all sets reached so far, starting with everything on omega
+        Map<BitSet, MeasureEntry> masses = new LinkedHashMap<BitSet, MeasureEntry>();
+        masses.put(omega, new MeasureEntry(size, omega, 1.0d));
+        double conflict = 0.0d;
+
+        for (MeasureEntry support : supports) {
+            double evidence = Math.min(support.getProbability(), 1.0d);
+            Map<BitSet, MeasureEntry> nextMasses = new LinkedHashMap<BitSet, MeasureEntry>();
+
+            for (MeasureEntry entry : masses.values()) {
+                //part of the mass the support leaves on omega keeps its set
+                addMass(nextMasses, entry.getBits(), entry.getProbability() * (1.0d - evidence));
+
+                //part of the mass the support puts on its focal set moves to the intersection
+                BitSet intersection = (BitSet) entry.getBits().clone();
+                intersection.and(support.getBits());
+                double value = entry.getProbability() * evidence;
+                if (intersection.isEmpty()) {
+                    conflict = conflict + value;
+                }
+                else {
+                    addMass(nextMasses, intersection, value);
+                }
+            }
+            masses = nextMasses;
+        }
+
+        Measure retMeasure = new Measure(size);
+        if (conflict <= 0.99d) {
+            double correction = 1.0d/(1.0d-conflict);
+            for (MeasureEntry entry : masses.values()) {
+                if (!entry.getBits().equals(omega)) {
+                    retMeasure.addEntry(entry.getBits(), entry.getProbability() * correction);
+                }
+            }
+        }
+        return retMeasure;
+    }
+
+    /**
+     * Adds mass to a set in the given map, creating an entry for the set if needed
+     * @param masses the map of unnormalized masses
+     * @param values packed values of the set
+     * @param mass the mass to be added, nothing happens if it is not positive
+     */
+    private void addMass(Map<BitSet, MeasureEntry> masses, BitSet values, double mass) {
+        if (mass > 0.0d) {
+            MeasureEntry existing = masses.get(values);
+            if (existing == null) {
+                masses.put(values, new MeasureEntry(size, values, mass));
+            }
+            else {
+                existing.setProbability(existing.getProbability() + mass);
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package de.dhbw.emotion_classifier;
+
+import dempster.Measure;
+import dempster.SimpleSupportCombiner;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The BatchClassifier classifies many normalized input vectors at once. The input vectors are split into chunks of
+ * consecutive rows that are classified independently by an executor. All threads only read the shared model and write
+ * into their own part of the preallocated results.
+ */
+public class BatchClassifier {
+    /**
+     * Receives the results of classifyAll in input order.
+     */
+    public interface ResultConsumer {
+        /**
+         * Called once per input vector in input order, always from the thread that called classifyAll.
+         * @param rowId The row ID of the input vector starting at 0
+         * @param plausibilities The plausibility of each table row. The array is reused for the next input vector.
+         * @param detectedRow The index of the most plausible table row
+         */
+        void accept(int rowId, double[] plausibilities, int detectedRow);
+    }
+
+    /**
+     * Number of input vectors each task classifies.
+     */
+    private static final int CHUNK_SIZE = 1 << 10;
+
+    /**
+     * Classify all input vectors.
+     * @param normalizedData The normalized input vectors
+     * @param model The classification model
+     * @param executor The executor that runs the classification tasks
+     * @param keepPlausibilities If set, the plausibilities of all table rows are stored in the results
+     * @return The results of all input vectors
+     * @throws InterruptedException If the thread is interrupted while waiting for the tasks
+     * @throws ExecutionException If a task fails
+     */
+    public static ClassificationResults classifyAll(FeatureTable normalizedData, ClassificationModel model, ExecutorService executor, boolean keepPlausibilities) throws InterruptedException, ExecutionException {
+        int rowCount = normalizedData.getRowCount();
+        ClassificationResults results = new ClassificationResults(rowCount, model.getSize(), keepPlausibilities);
+
+        List<Future<?>> tasks = new ArrayList<>();
+        try {
+            for(int chunkStart = 0; chunkStart < rowCount; chunkStart += CHUNK_SIZE) {
+                int fromRow = chunkStart;
+                int toRow = Math.min(rowCount, chunkStart + CHUNK_SIZE);
+                tasks.add(executor.submit(() -> BatchClassifier.classifyRange(normalizedData, model, results, fromRow, toRow, 0)));
+            }
+            for(Future<?> task: tasks) {
+                task.get();
+            }
+        } finally {
+            for(Future<?> task: tasks) {
+                task.cancel(true);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Classify all input vectors and hand their results to a consumer in input order as soon as their chunk is done. At
+     * most window chunks are classified or waiting for the consumer at any time, so the memory needed for the results
+     * does not grow with the number of input vectors. Each chunk in flight holds the plausibilities of 1024 input vectors
+     * for every table row, i.e. window * 1024 * model.getSize() * 8 bytes in total. A smaller window saves memory for
+     * large tables, but lets threads idle while the consumer catches up.
+     * @param normalizedData The normalized input vectors
+     * @param model The classification model
+     * @param executor The executor that runs the classification tasks
+     * @param window The number of chunks that may be in flight, e.g. twice the number of threads of the executor
+     * @param consumer The consumer receiving the results
+     * @throws InterruptedException If the thread is interrupted while waiting for the tasks
+     * @throws ExecutionException If a task fails. The chunks still in flight are cancelled.
+     */
+    public static void classifyAll(FeatureTable normalizedData, ClassificationModel model, ExecutorService executor, int window, ResultConsumer consumer) throws InterruptedException, ExecutionException {
+        int rowCount = normalizedData.getRowCount();
+        int chunks = (rowCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+        ArrayDeque<Future<ClassificationResults>> pendingChunks = new ArrayDeque<>();
+        try {
+            int nextChunk = 0;
+            for(; nextChunk < chunks && pendingChunks.size() < Math.max(1, window); nextChunk++) {
+                pendingChunks.add(BatchClassifier.submitChunk(normalizedData, model, executor, nextChunk));
+            }
+
+            double[] plausibilities = new double[model.getSize()];
+            for(int chunk = 0; chunk < chunks; chunk++) {
+                ClassificationResults results = pendingChunks.remove().get();
+
+                // Keep the executor busy while the finished chunk is consumed
+                if(nextChunk < chunks) {
+                    pendingChunks.add(BatchClassifier.submitChunk(normalizedData, model, executor, nextChunk++));
+                }
+
+                for(int i = 0; i < results.getRowCount(); i++) {
+                    consumer.accept(chunk * CHUNK_SIZE + i, results.getPlausibilities(i, plausibilities), results.getDetectedRow(i));
+                }
+            }
+        } finally {
+            for(Future<ClassificationResults> pendingChunk: pendingChunks) {
+                pendingChunk.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Submit the classification of a chunk whose results are stored in their own results.
+     * @param normalizedData The normalized input vectors
+     * @param model The classification model
+     * @param executor The executor that runs the classification task
+     * @param chunk The chunk ID starting at 0
+     * @return The results of the chunk, indexed from 0
+     */
+    private static Future<ClassificationResults> submitChunk(FeatureTable normalizedData, ClassificationModel model, ExecutorService executor, int chunk) {
+        int fromRow = chunk * CHUNK_SIZE;
+        int toRow = Math.min(normalizedData.getRowCount(), fromRow + CHUNK_SIZE);
+
+        return executor.submit(() -> {
+            ClassificationResults results = new ClassificationResults(toRow - fromRow, model.getSize(), true);
+            BatchClassifier.classifyRange(normalizedData, model, results, fromRow, toRow, fromRow);
+            return results;
+        });
+    }
+
+    /**
+     * Classify a range of input vectors and store their results.
+     * @param normalizedData The normalized input vectors
+     * @param model The classification model
+     * @param results The results the range is written into
+     * @param fromRow The first row ID of the range
+     * @param toRow The row ID behind the last row of the range
+     * @param firstResultRow The row ID whose results are stored at index 0 of the results
+     */
+    private static void classifyRange(FeatureTable normalizedData, ClassificationModel model, ClassificationResults results, int fromRow, int toRow, int firstResultRow) {
+        double[] row = new double[normalizedData.getColumnCount()];
+        double[] plausibilities = new double[model.getSize()];
+
+        for(int rowId = fromRow; rowId < toRow; rowId++) {
+            normalizedData.getRow(rowId, row);
+            results.setDetectedRow(rowId - firstResultRow, BatchClassifier.classify(row, model, plausibilities));
+            results.setPlausibilities(rowId - firstResultRow, plausibilities);
+        }
+    }
+
+    /**
+     * Classify a single input vector. Each feature forms a simple support function (its hit mask plus the omega
+     * remainder), all of them are accumulated using the Dempster-Schafer rule and the most plausible table row is chosen.
+     * @param normalizedRow The input vector in normalized form
+     * @param model The classification model
+     * @param plausibilities Receives the plausibility of each table row. It needs to hold at least model.getSize() values.
+     * @return The index of the most plausible table row, 0 if no table row is plausible
+     */
+    public static int classify(double[] normalizedRow, ClassificationModel model, double[] plausibilities) {
+        HitMaskIndex hitMasks = model.getHitMasks();
+        EvidenceIndex evidenceIndex = model.getEvidenceIndex();
+
+        SimpleSupportCombiner combiner = new SimpleSupportCombiner(hitMasks.getSize());
+        for(int column = 0; column < normalizedRow.length; column++) {
+            combiner.addSupport(hitMasks.getHitMask(column, normalizedRow[column]), evidenceIndex.getEvidence(column, normalizedRow[column]));
+        }
+        Measure accumulated = combiner.combine();
+
+        double[] rowPlausibilities = accumulated.calculatePlausabilities();
+        double highestPlausability = 0;
+        int highestPlausabilityIndex = 0;
+        for(int i = 0; i < rowPlausibilities.length; i++) {
+            plausibilities[i] = rowPlausibilities[i];
+
+            if(highestPlausability < rowPlausibilities[i]) {
+                highestPlausability = rowPlausibilities[i];
+                highestPlausabilityIndex = i;
+            }
+        }
+        return highestPlausabilityIndex;
+    }
+}
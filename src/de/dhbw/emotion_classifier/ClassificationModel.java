@@ -0,0 +1,300 @@
+package de.dhbw.emotion_classifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The ClassificationModel bundles everything needed to classify a normalized input vector: the rows of the
+ * classification category table, its hit masks, the evidences of all features and the names of all table rows.
+ *
+ * The table is compiled into flat arrays when the model is created. Categories are referred to by an ID (their index in
+ * the table's iteration order), every table row knows the ID of its category and the pre-classified input vectors are
+ * held in a bitmap, so names, categories and pre-classification can be looked up in constant time. The model is not
+ * changed after its creation, so it can be used by many threads at once.
+ *
+ * A ModelUpdater can derive new versions of a model that hold additional rows. The arrays of the table rows are then
+ * shared between the versions: a newer version only writes behind the rows of the older one, which never reads that far.
+ * Each version can only be extended once, so two updaters can never write into the same shared arrays.
+ */
+public class ClassificationModel {
+    /**
+     * The category names by category ID. Only the first categoryCount names belong to the model.
+     */
+    private final String[] categoryNames;
+    private final int categoryCount;
+
+    /**
+     * The number of table rows of each category
+     */
+    private final int[] categorySizes;
+
+    /**
+     * The category ID of each table row. Only the first size values of the table row arrays belong to the model.
+     */
+    private final int[] rowCategories;
+    private final int size;
+
+    /**
+     * The names of all table rows (e.g. Anger_2)
+     */
+    private final String[] rowNames;
+
+    /**
+     * The normalized values of all table rows, one block of columns values per table row
+     */
+    private final double[] rowValues;
+    private final int columns;
+
+    /**
+     * Bit i is set if input vector i is pre-classified. The bitmap covers the input vectors the first version of the
+     * model was created with, all input vectors added later on (starting at preClassifiedFrom) are pre-classified.
+     */
+    private final BitSet preClassifiedRows;
+    private final int preClassifiedFrom;
+
+    /**
+     * The number of input vectors the model knows of. Rows added by a ModelUpdater get the IDs behind them.
+     */
+    private final int dataRowCount;
+
+    private final HitMaskIndex hitMasks;
+    private final EvidenceIndex evidenceIndex;
+
+    /**
+     * Set once the next version of the model was created, which owns the space behind the table rows from then on
+     */
+    private final AtomicBoolean extended = new AtomicBoolean();
+
+    /**
+     * Create the model of a classification category table. The table and categories are copied, later changes to them
+     * do not affect the model.
+     * @param normalizedData The normalized input vectors
+     * @param table The classification category table
+     * @param categories The list of all categories and their row IDs inside the raw data
+     * @param normalizers All normalizers that were generated globally for each feature
+     */
+    public ClassificationModel(FeatureTable normalizedData, HashMap<String, ArrayList<double[]>> table, HashMap<String, ArrayList<Integer>> categories, ArrayList<Normalizer> normalizers) {
+        this.hitMasks = new HitMaskIndex(table);
+        this.evidenceIndex = new EvidenceIndex(normalizedData, table, categories, normalizers);
+        this.columns = normalizedData.getColumnCount();
+
+        this.size = hitMasks.getSize();
+        categoryNames = table.keySet().toArray(new String[0]);
+        categoryCount = categoryNames.length;
+        categorySizes = new int[categoryCount];
+        rowCategories = new int[size];
+        rowNames = new String[size];
+        rowValues = new double[size * columns];
+
+        int i = 0;
+        for(int categoryId = 0; categoryId < categoryNames.length; categoryId++) {
+            ArrayList<double[]> categoryRows = table.get(categoryNames[categoryId]);
+            for(int categoryRow = 0; categoryRow < categoryRows.size(); categoryRow++) {
+                rowCategories[i] = categoryId;
+                rowNames[i] = categoryNames[categoryId] + "_" + categoryRow;
+                System.arraycopy(categoryRows.get(categoryRow), 0, rowValues, i * columns, columns);
+                i++;
+            }
+            categorySizes[categoryId] = categoryRows.size();
+        }
+
+        preClassifiedRows = new BitSet();
+        for(ArrayList<Integer> rowIds: categories.values()) {
+            for(Integer rowId: rowIds) {
+                preClassifiedRows.set(rowId);
+            }
+        }
+        dataRowCount = normalizedData.getRowCount();
+        preClassifiedFrom = dataRowCount;
+    }
+
+    /**
+     * Create the next version of a model. The new table rows are appended behind the rows of the previous version and
+     * the new pre-classified rows get the input vector IDs behind the ones known to the previous version. The previous
+     * version stays valid. As the table row arrays are shared and appended to, every version can only be extended once:
+     * the first call for a version claims it, later ones fail. If creating the new version fails, the claim is released
+     * again.
+     * @param previous The previous version
+     * @param tableRows The normalized rows appended to the classification category table
+     * @param tableRowCategories The category of each new table row
+     * @param labelledRows The normalized rows that were pre-classified (including the ones added to the table)
+     * @param labelledRowCategories The category of each new pre-classified row
+     * @throws IllegalStateException If the previous version was already extended, e.g. by another ModelUpdater
+     */
+    ClassificationModel(ClassificationModel previous, List<double[]> tableRows, List<String> tableRowCategories, List<double[]> labelledRows, List<String> labelledRowCategories) {
+        this.hitMasks = previous.hitMasks.withRows(tableRows);
+        this.evidenceIndex = previous.evidenceIndex.withRows(tableRows, tableRowCategories, labelledRows, labelledRowCategories);
+        this.columns = previous.columns;
+
+        this.preClassifiedRows = previous.preClassifiedRows;
+        this.preClassifiedFrom = previous.preClassifiedFrom;
+        this.dataRowCount = previous.dataRowCount + labelledRows.size();
+
+        int newSize = previous.size + tableRows.size();
+        int[] newRowCategories = previous.rowCategories;
+        String[] newRowNames = previous.rowNames;
+        double[] newRowValues = previous.rowValues;
+
+        // Category names are only appended, but the sizes of existing categories change and need to be copied
+        String[] newCategoryNames = previous.categoryNames;
+        int newCategoryCount = previous.categoryCount;
+        int[] newCategorySizes = Arrays.copyOf(previous.categorySizes, previous.categoryCount + tableRows.size());
+
+        // Only the claimed version may write behind its rows into the shared arrays
+        if(!previous.extended.compareAndSet(false, true)) {
+            throw new IllegalStateException("The model version was already extended, only its latest version can be updated.");
+        }
+        try {
+            // Grow the shared arrays by doubling, so appending takes amortized constant time per row
+            if(newSize > newRowCategories.length) {
+                int capacity = Math.max(newSize, newRowCategories.length * 2);
+                newRowCategories = Arrays.copyOf(newRowCategories, capacity);
+                newRowNames = Arrays.copyOf(newRowNames, capacity);
+                newRowValues = Arrays.copyOf(newRowValues, capacity * columns);
+            }
+
+            for(int i = 0; i < tableRows.size(); i++) {
+                String category = tableRowCategories.get(i);
+
+                int categoryId = 0;
+                while(categoryId < newCategoryCount && !newCategoryNames[categoryId].equals(category)) {
+                    categoryId++;
+                }
+                if(categoryId == newCategoryCount) {
+                    if(newCategoryCount == newCategoryNames.length) {
+                        newCategoryNames = Arrays.copyOf(newCategoryNames, Math.max(1, newCategoryCount * 2));
+                    }
+                    newCategoryNames[newCategoryCount++] = category;
+                }
+
+                int rowId = previous.size + i;
+                newRowCategories[rowId] = categoryId;
+                newRowNames[rowId] = category + "_" + newCategorySizes[categoryId]++;
+                System.arraycopy(tableRows.get(i), 0, newRowValues, rowId * columns, columns);
+            }
+        } catch (RuntimeException | Error e) {
+            // The rows written so far lie behind the previous version, which never reads them
+            previous.extended.set(false);
+            throw e;
+        }
+
+        this.size = newSize;
+        this.rowCategories = newRowCategories;
+        this.rowNames = newRowNames;
+        this.rowValues = newRowValues;
+        this.categoryNames = newCategoryNames;
+        this.categoryCount = newCategoryCount;
+        this.categorySizes = newCategorySizes;
+    }
+
+    public HitMaskIndex getHitMasks() {
+        return hitMasks;
+    }
+
+    public EvidenceIndex getEvidenceIndex() {
+        return evidenceIndex;
+    }
+
+    /**
+     * Get the number of rows inside the classification category table.
+     * @return The number of table rows
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get the number of features of each table row.
+     * @return The number of columns
+     */
+    public int getColumnCount() {
+        return columns;
+    }
+
+    /**
+     * Get the number of categories inside the classification category table.
+     * @return The number of categories
+     */
+    public int getCategoryCount() {
+        return categoryCount;
+    }
+
+    /**
+     * Get the name of a category.
+     * @param categoryId The category ID starting at 0
+     * @return The category name
+     */
+    public String getCategoryName(int categoryId) {
+        return categoryNames[categoryId];
+    }
+
+    /**
+     * Get the category a table row belongs to.
+     * @param rowId The row ID inside the table starting at 0
+     * @return The category ID
+     */
+    public int getRowCategory(int rowId) {
+        return rowCategories[rowId];
+    }
+
+    /**
+     * Get the name of a table row, as generated by Classifier's getTableRowName.
+     * @param rowId The row ID inside the table starting at 0
+     * @return The table row name
+     */
+    public String getRowName(int rowId) {
+        return rowNames[rowId];
+    }
+
+    /**
+     * Copy the normalized values of a table row into an existing array.
+     * @param rowId The row ID inside the table starting at 0
+     * @param target The array the values are copied into. It needs to hold at least getColumnCount() values.
+     * @return The target array
+     */
+    public double[] getRow(int rowId, double[] target) {
+        System.arraycopy(rowValues, rowId * columns, target, 0, columns);
+        return target;
+    }
+
+    /**
+     * Checks whether an input vector is part of the pre-classified dataset.
+     * @param dataRowId The input vector's row ID. The ID starts at 0.
+     * @return True if the row is already pre-classified, false if not.
+     */
+    public boolean isPreClassified(int dataRowId) {
+        if(dataRowId >= preClassifiedFrom) {
+            return dataRowId < dataRowCount;
+        }
+        return preClassifiedRows.get(dataRowId);
+    }
+
+    /**
+     * Get the number of input vectors the model knows of, including the pre-classified rows added by a ModelUpdater.
+     * @return The number of input vectors
+     */
+    public int getDataRowCount() {
+        return dataRowCount;
+    }
+
+    /**
+     * Print the classification category table and all its entries, in the same form as Classifier's printTable.
+     */
+    public void printTable() {
+        double[] row = new double[columns];
+        for(int categoryId = 0; categoryId < categoryCount; categoryId++) {
+            System.out.println("== Category: " + categoryNames[categoryId] + " ==");
+
+            // Rows added by a ModelUpdater are appended behind all categories
+            for(int rowId = 0; rowId < size; rowId++) {
+                if(rowCategories[rowId] == categoryId) {
+                    System.out.println("  " + rowNames[rowId] + " " + Arrays.toString(getRow(rowId, row)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package de.dhbw.emotion_classifier;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The ClassificationPipeline classifies the input vectors of a CSV file while the file is still being read. Rows stream
+ * through the stages parse, normalize, classify and emit, which all run concurrently on their own threads. The stages
+ * are connected by bounded queues: a stage that is faster than the next one blocks until there is room again, so only
+ * a fixed number of rows is held in memory at any time, however large the input is.
+ *
+ * The threads are created by a ThreadFactory, so callers can decide e.g. about the names, priority or daemon status of
+ * the stage threads.
+ *
+ * The model has to exist before the pipeline starts. Creating it from the labelled rows of the same file takes a pass
+ * over the whole file, so the first result only arrives early if the model is created from other or fewer rows.
+ */
+public class ClassificationPipeline {
+    /**
+     * Receives the results of the pipeline.
+     */
+    public interface ResultConsumer {
+        /**
+         * Called once per input vector in file order, always from the same thread.
+         * @param rowId The row ID of the input vector starting at 0 (the header line is not counted)
+         * @param plausibilities The plausibility of each table row. The array is not reused by the pipeline.
+         * @param detectedRow The index of the most plausible table row
+         */
+        void accept(long rowId, double[] plausibilities, int detectedRow);
+    }
+
+    /**
+     * A row on its way through the pipeline
+     */
+    private static final class PipelineRow {
+        private final long rowId;
+        private double[] values;
+        private double[] plausibilities;
+        private int detectedRow;
+
+        private PipelineRow(long rowId, double[] values) {
+            this.rowId = rowId;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Marks the end of the input. It is passed on from stage to stage.
+     */
+    private static final PipelineRow END = new PipelineRow(-1, null);
+
+    private final ClassificationModel model;
+    private final CompiledNormalizer[] normalizers;
+    private final int queueCapacity;
+    private final int classifierThreads;
+    private final ThreadFactory threadFactory;
+
+    /**
+     * Create a pipeline running every stage on a single platform thread.
+     * @param model The classification model
+     * @param normalizers The normalizers of all features that the model was created with
+     * @param queueCapacity The number of rows each queue between two stages can hold
+     */
+    public ClassificationPipeline(ClassificationModel model, ArrayList<Normalizer> normalizers, int queueCapacity) {
+        this(model, normalizers, queueCapacity, 1, Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Create a pipeline.
+     * @param model The classification model
+     * @param normalizers The normalizers of all features that the model was created with
+     * @param queueCapacity The number of rows each queue between two stages can hold
+     * @param classifierThreads The number of threads classifying rows. The emit stage restores the file order.
+     * @param threadFactory The factory creating the threads of all stages
+     */
+    public ClassificationPipeline(ClassificationModel model, ArrayList<Normalizer> normalizers, int queueCapacity, int classifierThreads, ThreadFactory threadFactory) {
+        this.model = model;
+        this.normalizers = new CompiledNormalizer[normalizers.size()];
+        for(int column = 0; column < normalizers.size(); column++) {
+            this.normalizers[column] = normalizers.get(column).compile();
+        }
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.classifierThreads = Math.max(1, classifierThreads);
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Classify all input vectors of a CSV file. The method returns once every row has been handed to the consumer.
+     * @param file The file that will be classified
+     * @param spec The layout of the CSV file, its numerical columns need to match the model's features
+     * @param consumer The consumer receiving the results in file order
+     * @throws ExecutionException If a stage fails, e.g. because the file can not be read
+     * @throws InterruptedException If the thread is interrupted while waiting for the stages
+     */
+    public void run(Path file, ColumnSpec spec, ResultConsumer consumer) throws ExecutionException, InterruptedException {
+        BlockingQueue<PipelineRow> parsedRows = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<PipelineRow> normalizedRows = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<PipelineRow> classifiedRows = new ArrayBlockingQueue<>(queueCapacity);
+
+        // Limits the rows between the normalize and the emit stage, which also bounds the rows waiting to be reordered
+        Semaphore reorderWindow = new Semaphore(queueCapacity);
+
+        List<Thread> threads = new ArrayList<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        threads.add(stage(threads, failure, () -> parse(file, spec, parsedRows)));
+        threads.add(stage(threads, failure, () -> normalize(parsedRows, normalizedRows, reorderWindow)));
+        for(int i = 0; i < classifierThreads; i++) {
+            threads.add(stage(threads, failure, () -> classify(normalizedRows, classifiedRows)));
+        }
+        threads.add(stage(threads, failure, () -> emit(classifiedRows, consumer, reorderWindow)));
+
+        for(Thread thread: threads) {
+            thread.start();
+        }
+        try {
+            for(Thread thread: threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            for(Thread thread: threads) {
+                thread.interrupt();
+            }
+            throw e;
+        }
+
+        if(failure.get() != null) {
+            throw new ExecutionException(failure.get());
+        }
+    }
+
+    /**
+     * A stage's work, which may block on its queues.
+     */
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    /**
+     * Create the thread of a stage. If the stage fails, all other stages are interrupted so none of them keeps waiting
+     * on a queue that will never be filled or emptied.
+     * @param threads All threads of the pipeline
+     * @param failure Receives the first failure of any stage
+     * @param stage The work of the stage
+     * @return The thread, not yet started
+     */
+    private Thread stage(List<Thread> threads, AtomicReference<Throwable> failure, Stage stage) {
+        return threadFactory.newThread(() -> {
+            try {
+                stage.run();
+            } catch (InterruptedException | CancellationException e) {
+                // Another stage failed
+            } catch (Throwable t) {
+                if(failure.compareAndSet(null, t)) {
+                    for(Thread thread: threads) {
+                        if(thread != Thread.currentThread()) {
+                            thread.interrupt();
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Parse the file and pass each row on.
+     * @param file The file that will be parsed
+     * @param spec The layout of the CSV file
+     * @param output The queue of parsed rows
+     * @throws IOException If the file can not be read
+     * @throws InterruptedException If the stage is interrupted
+     */
+    private void parse(Path file, ColumnSpec spec, BlockingQueue<PipelineRow> output) throws IOException, InterruptedException {
+        long[] rowId = {0};
+        new CsvScanner(spec.getSeparator(), spec.getColumnsBegin(), spec.getColumnsEnd(), spec.getLabelColumn(), spec.isSkipHeader()).scan(file, (features, label) -> {
+            try {
+                output.put(new PipelineRow(rowId[0]++, features));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException();
+            }
+        });
+        output.put(END);
+    }
+
+    /**
+     * Normalize each row in place and pass it on. The end marker is passed on once for every classifier thread.
+     * @param input The queue of parsed rows
+     * @param output The queue of normalized rows
+     * @param reorderWindow A permit is taken for every row passed on, the emit stage returns it
+     * @throws InterruptedException If the stage is interrupted
+     */
+    private void normalize(BlockingQueue<PipelineRow> input, BlockingQueue<PipelineRow> output, Semaphore reorderWindow) throws InterruptedException {
+        for(PipelineRow row = input.take(); row != END; row = input.take()) {
+            for(int column = 0; column < normalizers.length; column++) {
+                row.values[column] = normalizers[column].normalize(row.values[column]);
+            }
+            reorderWindow.acquire();
+            output.put(row);
+        }
+        for(int i = 0; i < classifierThreads; i++) {
+            output.put(END);
+        }
+    }
+
+    /**
+     * Classify each row and pass it on.
+     * @param input The queue of normalized rows
+     * @param output The queue of classified rows
+     * @throws InterruptedException If the stage is interrupted
+     */
+    private void classify(BlockingQueue<PipelineRow> input, BlockingQueue<PipelineRow> output) throws InterruptedException {
+        for(PipelineRow row = input.take(); row != END; row = input.take()) {
+            row.plausibilities = new double[model.getSize()];
+            row.detectedRow = BatchClassifier.classify(row.values, model, row.plausibilities);
+            row.values = null;
+            output.put(row);
+        }
+        output.put(END);
+    }
+
+    /**
+     * Hand the classified rows to the consumer in file order. Rows that overtook an earlier row on another classifier
+     * thread wait until the earlier row arrives. Every row holds a permit of the reorder window until it is handed to the
+     * consumer, so at most queueCapacity rows can be waiting, even if a single row takes long to classify.
+     * @param input The queue of classified rows
+     * @param consumer The consumer receiving the results
+     * @param reorderWindow The permit of every row handed to the consumer is returned
+     * @throws InterruptedException If the stage is interrupted
+     */
+    private void emit(BlockingQueue<PipelineRow> input, ResultConsumer consumer, Semaphore reorderWindow) throws InterruptedException {
+        HashMap<Long, PipelineRow> waitingRows = new HashMap<>();
+        long nextRowId = 0;
+        int finishedClassifiers = 0;
+
+        while(finishedClassifiers < classifierThreads) {
+            PipelineRow row = input.take();
+            if(row == END) {
+                finishedClassifiers++;
+                continue;
+            }
+
+            waitingRows.put(row.rowId, row);
+            for(PipelineRow next = waitingRows.remove(nextRowId); next != null; next = waitingRows.remove(nextRowId)) {
+                consumer.accept(next.rowId, next.plausibilities, next.detectedRow);
+                reorderWindow.release();
+                nextRowId++;
+            }
+        }
+    }
+}
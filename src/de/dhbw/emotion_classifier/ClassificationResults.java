@@ -0,0 +1,96 @@
+package de.dhbw.emotion_classifier;
+
+/**
+ * ClassificationResults holds the detected table row of every classified input vector and, if requested, the
+ * plausibilities of all table rows. The arrays are allocated once for all input vectors, so each classification thread
+ * writes into its own part of them.
+ */
+public class ClassificationResults {
+    /**
+     * The index of the most plausible table row by input vector
+     */
+    private final int[] detectedRows;
+
+    /**
+     * The plausibilities of all table rows, one block of tableSize values per input vector. Null if not kept.
+     */
+    private final double[] plausibilities;
+
+    private final int tableSize;
+
+    /**
+     * Create empty results.
+     * @param rowCount The number of input vectors
+     * @param tableSize The number of rows inside the classification category table
+     * @param keepPlausibilities If set, room for the plausibilities of all table rows is allocated
+     * @throws IllegalArgumentException If the plausibilities of all input vectors do not fit into a single array
+     */
+    public ClassificationResults(int rowCount, int tableSize, boolean keepPlausibilities) {
+        // All plausibilities are held in one array, which is indexed by int
+        long plausibilityCount = (long) rowCount * tableSize;
+        if(keepPlausibilities && plausibilityCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Can not keep the plausibilities of " + rowCount + " input vectors for " + tableSize + " table rows, they need " + plausibilityCount + " values");
+        }
+
+        this.detectedRows = new int[rowCount];
+        this.plausibilities = keepPlausibilities ? new double[(int) plausibilityCount] : null;
+        this.tableSize = tableSize;
+    }
+
+    public int getRowCount() {
+        return detectedRows.length;
+    }
+
+    /**
+     * Get the table row an input vector was classified as.
+     * @param rowId The row ID of the input vector starting at 0
+     * @return The index of the most plausible table row
+     */
+    public int getDetectedRow(int rowId) {
+        return detectedRows[rowId];
+    }
+
+    void setDetectedRow(int rowId, int tableRowId) {
+        detectedRows[rowId] = tableRowId;
+    }
+
+    /**
+     * Check whether the plausibilities of all table rows were kept.
+     * @return True if getPlausibility can be used
+     */
+    public boolean hasPlausibilities() {
+        return plausibilities != null;
+    }
+
+    /**
+     * Get the plausibility of a table row for an input vector.
+     * @param rowId The row ID of the input vector starting at 0
+     * @param tableRowId The row ID inside the classification category table starting at 0
+     * @return The plausibility
+     */
+    public double getPlausibility(int rowId, int tableRowId) {
+        return plausibilities[rowId * tableSize + tableRowId];
+    }
+
+    /**
+     * Copy the plausibilities of all table rows for an input vector into an existing array.
+     * @param rowId The row ID of the input vector starting at 0
+     * @param target The array the plausibilities are copied into. It needs to hold at least tableSize values.
+     * @return The target array
+     */
+    public double[] getPlausibilities(int rowId, double[] target) {
+        System.arraycopy(plausibilities, rowId * tableSize, target, 0, tableSize);
+        return target;
+    }
+
+    /**
+     * Store the plausibilities of all table rows for an input vector.
+     * @param rowId The row ID of the input vector starting at 0
+     * @param rowPlausibilities The plausibility of each table row
+     */
+    void setPlausibilities(int rowId, double[] rowPlausibilities) {
+        if(plausibilities != null) {
+            System.arraycopy(rowPlausibilities, 0, plausibilities, rowId * tableSize, tableSize);
+        }
+    }
+}
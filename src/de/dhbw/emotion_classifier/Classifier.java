@@ -3,6 +3,7 @@ package de.dhbw.emotion_classifier;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 
 public class Classifier {
@@ -16,56 +17,61 @@ public class Classifier {
      */
     public static HashMap<String, ArrayList<double[]>> createTable(ArrayList<double[]> data, HashMap<String, ArrayList<Integer>> categories) {
         // Create table that will hold an ArrayList for each category
-        HashMap<String, ArrayList<double[]>> table = new HashMap<>();
+        TableBuilder table = new TableBuilder();
 
         // Loop through each category and add it to the table
         for(String category: categories.keySet()) {
             ArrayList<Integer> rowIds = categories.get(category);
 
             for(Integer rowId: rowIds) {
-                table = addTableRow(data.get(rowId), category, table);
+                table.addRow(category, data.get(rowId));
             }
         }
 
-        return table;
+        return table.getTable();
     }
 
     /**
-     * Add a classification row to the classification table. Rows are only inserted if needed (e.g. if it does not exist
-     * yet and conflicts are handled automatically.
-     * @param row Normalized input vector row
-     * @param category Name of the category the row should be inserted in
-     * @param table The classification category table the row will be added to
-     * @return The classification category table with the new row added (if necessary)
+     * Create a classification table based on the rows that are pre-classified.
+     * @param data The input vectors in any stored form (data HAS to be normalized!)
+     * @param categories The list of all categories and their row IDs inside the data
+     * @return The classification table. Each classification category is stored under its own classification name.
+     * Multiple rows for a category are stored inside a list under the categorie's name.
      */
-    private static HashMap<String, ArrayList<double[]>> addTableRow(double[] row, String category, HashMap<String, ArrayList<double[]>> table) {
-        // Check if category already exists in table
-        if(table.containsKey(category)) {
-            // Add row to existing category by checking if a new category payload has to be created
-            ArrayList<double[]> categoryPayload = table.get(category);
-
-            // A clash is falsified if a row is found inside the categorie's payload that is identical to the new row
-            boolean clash = true;
-
-            for(double[] payloadRow: categoryPayload) {
-                if(Arrays.equals(row, payloadRow)) {
-                    clash = false;
-                }
+    public static HashMap<String, ArrayList<double[]>> createTable(FeatureTable data, HashMap<String, ArrayList<Integer>> categories) {
+        TableBuilder table = new TableBuilder();
+
+        for(String category: categories.keySet()) {
+            for(Integer rowId: categories.get(category)) {
+                table.addRow(category, data.getRow(rowId, new double[data.getColumnCount()]));
             }
+        }
 
-            if(clash) {
-                // Add a new row to the categorie's payload
-                categoryPayload.add(row);
-                table.put(category, categoryPayload);
+        return table.getTable();
+    }
+
+    /**
+     * Create a classification table based on the rows that are pre-classified. Each row is unpacked into a reused buffer
+     * and looked up in a TableBuilder, only the rows that make it into the table get their own array.
+     * @param data The normalized input vectors in packed form
+     * @param categories The list of all categories and their row IDs inside the data
+     * @return The classification table. Each classification category is stored under its own classification name.
+     * Multiple rows for a category are stored inside a list under the categorie's name.
+     */
+    public static HashMap<String, ArrayList<double[]>> createTable(PackedVectors data, HashMap<String, ArrayList<Integer>> categories) {
+        TableBuilder table = new TableBuilder();
+        double[] row = new double[data.getColumnCount()];
+
+        for(String category: categories.keySet()) {
+            for(Integer rowId: categories.get(category)) {
+                data.getRow(rowId, row);
+                if(!table.containsRow(category, row)) {
+                    table.addRow(category, row.clone());
+                }
             }
-        } else {
-            // Create new category and add row to new ArrayList
-            ArrayList<double[]> categoryPayload = new ArrayList<>();
-            categoryPayload.add(row);
-            table.put(category, categoryPayload);
         }
 
-        return table;
+        return table.getTable();
     }
 
     /**
@@ -131,6 +137,20 @@ public class Classifier {
         return hitList;
     }
 
+    /**
+     * Look up the feature hit list of the input vector row inside a precomputed hit mask index. This is equivalent to
+     * createFeatureHitList but does not need to walk the classification category table.
+     * @param normalizedRow The input vector in normalized form
+     * @param hitMasks The hit mask index of the classification category table
+     * @param column The column number (also referred to as the feature index) inside input vector and classification
+     *               category table. The column number starts at 0.
+     * @return The feature hit list in packed form. Bit i is set if the i-th table row is hit. The mask is shared and must
+     * not be modified.
+     */
+    public static BitSet createFeatureHitMask(double[] normalizedRow, HitMaskIndex hitMasks, int column) {
+        return hitMasks.getHitMask(column, normalizedRow[column]);
+    }
+
     /**
      * Checks whether the input vector row is part of the pre-classified dataset.
      * @param dataRowId The input vectors row ID. The ID starts at 0.
@@ -162,6 +182,34 @@ public class Classifier {
      * @return The evidence that the data selected by the hit list is "representable".
      */
     public static double calculateEvidence(ArrayList<double[]> rawData, ArrayList<double[]> normalizedData, ArrayList<ArrayList> hitLists, HashMap<String, ArrayList<double[]>> table, HashMap<String, ArrayList<Integer>> categories, int column, double[] row, ArrayList<Normalizer> normalizers) {
+        ArrayList<BitSet> hitMasks = new ArrayList<>();
+        for(ArrayList hitList: hitLists) {
+            BitSet hitMask = new BitSet();
+            for(int i = 0; i < hitList.size(); i++) {
+                if(hitList.get(i).equals(1)) {
+                    hitMask.set(i);
+                }
+            }
+            hitMasks.add(hitMask);
+        }
+
+        return calculateEvidenceFromMasks(rawData, normalizedData, hitMasks, table, categories, column, row, normalizers);
+    }
+
+    /**
+     * Calculate the overall evidence that the rows inside the classification category table selected by the hit mask
+     * are "correct". Works like calculateEvidence but takes the hit lists in packed form.
+     * @param rawData The raw input vector list
+     * @param normalizedData The normalized input vector list
+     * @param hitMasks All hit masks that were generated for the current input vector
+     * @param table The classification category table
+     * @param categories The list of all categories and their row IDs inside the raw data
+     * @param column The column (also referred to as feature index) inside the input vector and hit masks.
+     * @param row The input vector in normalized form
+     * @param normalizers All normalizers that were generated globally for each feature
+     * @return The evidence that the data selected by the hit mask is "representable".
+     */
+    public static double calculateEvidenceFromMasks(ArrayList<double[]> rawData, ArrayList<double[]> normalizedData, ArrayList<BitSet> hitMasks, HashMap<String, ArrayList<double[]>> table, HashMap<String, ArrayList<Integer>> categories, int column, double[] row, ArrayList<Normalizer> normalizers) {
         int i = 0;
         //System.out.println("\nWorking on row: " + Arrays.toString(row) + " in column " + column + " with hit list " + hitLists.get(column));
 
@@ -171,8 +219,8 @@ public class Classifier {
         for(String category: table.keySet()) {
             ArrayList<double[]> categoryRows = table.get(category);
             for(double[] categoryRow: categoryRows) {
-                ArrayList<Integer> columnHitList = hitLists.get(column);
-                if(columnHitList.get(i) == 1) {
+                BitSet columnHitMask = hitMasks.get(column);
+                if(columnHitMask.get(i)) {
                     //System.out.println("Row " + i + " in category " + category + " is relevant");
 
                     // Search for rows in pre-classified category rows in the normalized data that have the same normalized column like the current category row
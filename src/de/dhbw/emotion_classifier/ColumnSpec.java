@@ -0,0 +1,91 @@
+package de.dhbw.emotion_classifier;
+
+/**
+ * A ColumnSpec describes the layout of an input CSV file: the separator, the range of numerical feature columns, the
+ * column holding the category labels and whether the file starts with a header line.
+ */
+public class ColumnSpec {
+    private char separator;
+    private int columnsBegin;
+    private int columnsEnd;
+    private int labelColumn;
+    private boolean skipHeader;
+
+    /**
+     * Create a column specification.
+     * @param separator The separator splits each column of the CSV file
+     * @param columnsBegin The column ID (beginning at 1) that marks the first numerical column that will be loaded
+     * @param columnsEnd The column ID that marks the last numerical column that will be loaded
+     * @param labelColumn The column ID (beginning at 1) that contains the category labels
+     * @param skipHeader If set, the first line will not be interpreted as data but as a header line
+     * @throws IllegalArgumentException If the column range is empty or does not start at column 1 or later, or if the
+     * label column is no valid column or lies inside the column range
+     */
+    public ColumnSpec(char separator, int columnsBegin, int columnsEnd, int labelColumn, boolean skipHeader) {
+        if(columnsBegin < 1) {
+            throw new IllegalArgumentException("The first numerical column " + columnsBegin + " is invalid, columns are counted starting at 1.");
+        }
+        if(columnsEnd < columnsBegin) {
+            throw new IllegalArgumentException("The last numerical column " + columnsEnd + " lies before the first numerical column " + columnsBegin + ".");
+        }
+        if(labelColumn < 1) {
+            throw new IllegalArgumentException("The label column " + labelColumn + " is invalid, columns are counted starting at 1.");
+        }
+        if(labelColumn >= columnsBegin && labelColumn <= columnsEnd) {
+            throw new IllegalArgumentException("The label column " + labelColumn + " lies inside the numerical columns " + columnsBegin + "-" + columnsEnd + ".");
+        }
+
+        this.separator = separator;
+        this.columnsBegin = columnsBegin;
+        this.columnsEnd = columnsEnd;
+        this.labelColumn = labelColumn;
+        this.skipHeader = skipHeader;
+    }
+
+    /**
+     * Parse a column specification of the form "begin-end:label" (e.g. "2-4:5") for files separated by ";" that start
+     * with a header line.
+     * @param spec The column specification
+     * @return The parsed column specification
+     * @throws IllegalArgumentException If the specification does not follow the pattern or describes invalid columns
+     */
+    public static ColumnSpec parse(String spec) {
+        String[] parts = spec.split("[-:]");
+        if(parts.length != 3) {
+            throw new IllegalArgumentException("Column specification '" + spec + "' does not follow the pattern begin-end:label (e.g. 2-4:5)");
+        }
+        try {
+            return new ColumnSpec(';', Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()), Integer.parseInt(parts[2].trim()), true);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Column specification '" + spec + "' does not follow the pattern begin-end:label (e.g. 2-4:5)", e);
+        }
+    }
+
+    public char getSeparator() {
+        return separator;
+    }
+
+    public int getColumnsBegin() {
+        return columnsBegin;
+    }
+
+    public int getColumnsEnd() {
+        return columnsEnd;
+    }
+
+    public int getLabelColumn() {
+        return labelColumn;
+    }
+
+    public boolean isSkipHeader() {
+        return skipHeader;
+    }
+
+    /**
+     * Get the number of numerical feature columns.
+     * @return The number of columns between columnsBegin and columnsEnd
+     */
+    public int getColumns() {
+        return columnsEnd - columnsBegin + 1;
+    }
+}
@@ -0,0 +1,103 @@
+package de.dhbw.emotion_classifier;
+
+import java.util.Arrays;
+
+/**
+ * ColumnStatistics gathers the minimum, maximum and sum of every column of the input vectors together with the number of
+ * rows. Statistics of different parts of the data (e.g. input file shards) can be merged, so a Normalizer can set its
+ * boundaries without another pass over the data.
+ */
+public class ColumnStatistics {
+    private double[] min;
+    private double[] max;
+    private double[] sum;
+    private long count = 0;
+
+    /**
+     * Create empty statistics. The start values match the ones used by Normalizer's setBoundaries.
+     * @param columns The number of columns of the input vectors
+     */
+    public ColumnStatistics(int columns) {
+        min = new double[columns];
+        max = new double[columns];
+        sum = new double[columns];
+        Arrays.fill(min, Double.MAX_VALUE);
+        Arrays.fill(max, Double.MIN_VALUE);
+    }
+
+    /**
+     * Gather the statistics of all columns for a range of rows. Each column is scanned sequentially.
+     * @param data The raw input vectors
+     * @param fromRow The first row ID of the range
+     * @param toRow The row ID behind the last row of the range
+     * @return The statistics of the range
+     */
+    public static ColumnStatistics of(Dataset data, int fromRow, int toRow) {
+        ColumnStatistics statistics = new ColumnStatistics(data.getColumnCount());
+        for(int column = 0; column < data.getColumnCount(); column++) {
+            double[] values = data.getColumn(column);
+            double min = statistics.min[column], max = statistics.max[column], sum = 0;
+
+            for(int row = fromRow; row < toRow; row++) {
+                min = Double.min(min, values[row]);
+                max = Double.max(max, values[row]);
+                sum += values[row];
+            }
+
+            statistics.min[column] = min;
+            statistics.max[column] = max;
+            statistics.sum[column] = sum;
+        }
+        statistics.count = toRow - fromRow;
+        return statistics;
+    }
+
+    /**
+     * Add a row to the statistics.
+     * @param row The raw input vector
+     */
+    public void add(double[] row) {
+        for(int column = 0; column < sum.length; column++) {
+            double fieldValue = row[column];
+
+            min[column] = Double.min(min[column], fieldValue);
+            max[column] = Double.max(max[column], fieldValue);
+
+            sum[column] += fieldValue;
+        }
+        count++;
+    }
+
+    /**
+     * Merge the statistics of another part of the data into these statistics.
+     * @param other The statistics that will be merged. They need to have the same number of columns.
+     */
+    public void merge(ColumnStatistics other) {
+        for(int column = 0; column < sum.length; column++) {
+            min[column] = Double.min(min[column], other.min[column]);
+            max[column] = Double.max(max[column], other.max[column]);
+            sum[column] += other.sum[column];
+        }
+        count += other.count;
+    }
+
+    public int getColumns() {
+        return sum.length;
+    }
+
+    public double getMin(int column) {
+        return min[column];
+    }
+
+    public double getMax(int column) {
+        return max[column];
+    }
+
+    public double getSum(int column) {
+        return sum[column];
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
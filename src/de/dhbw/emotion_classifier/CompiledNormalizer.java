@@ -0,0 +1,107 @@
+package de.dhbw.emotion_classifier;
+
+/**
+ * A CompiledNormalizer is an immutable form of a Normalizer whose boundaries are set. The center, slope and intercepts
+ * of each normalization category (bucket) are computed once, so determining the evidence of a value only needs to pick
+ * the bucket and evaluate one linear function. The results are identical to Normalizer's getNormalizationEvidence.
+ *
+ * The batch methods run a plain loop over primitive arrays without calls or allocations, which the JIT can unroll
+ * and vectorize.
+ */
+public class CompiledNormalizer {
+    private final double minMedium;
+    private final double maxMedium;
+
+    /**
+     * Center of each bucket. Index 0 is used for values that can not be normalized (e.g. NaN).
+     */
+    private final double[] centers = new double[4];
+
+    /**
+     * Slope of the evidence left of each bucket's center. Right of the center the negated slope is used.
+     */
+    private final double[] slopes = new double[4];
+
+    /**
+     * Intercept of the evidence left of each bucket's center
+     */
+    private final double[] leftIntercepts = new double[4];
+
+    /**
+     * Intercept of the evidence right of each bucket's center
+     */
+    private final double[] rightIntercepts = new double[4];
+
+    /**
+     * Compile a normalizer. Later changes to the normalizer's boundaries are not reflected.
+     * @param normalizer The normalizer whose boundaries are set
+     */
+    public CompiledNormalizer(Normalizer normalizer) {
+        this.minMedium = normalizer.minMedium;
+        this.maxMedium = normalizer.maxMedium;
+
+        // Bucket 0 mirrors the fallback values of Normalizer for values that can not be normalized
+        double[] widths = {
+                -1,
+                normalizer.minMedium - normalizer.minSmall,
+                normalizer.maxMedium - normalizer.minMedium,
+                normalizer.maxLarge - normalizer.maxMedium
+        };
+        centers[0] = 0;
+        centers[1] = normalizer.minMedium - (normalizer.minMedium - normalizer.minSmall) / 2;
+        centers[2] = normalizer.maxMedium - (normalizer.maxMedium - normalizer.minMedium) / 2;
+        centers[3] = normalizer.maxLarge - (normalizer.maxLarge - normalizer.maxMedium) / 2;
+
+        for(int bucket = 0; bucket < 4; bucket++) {
+            slopes[bucket] = 0.5 / (widths[bucket] / 2);
+            leftIntercepts[bucket] = (0.5 / -(widths[bucket] / 2)) * centers[bucket] + 1;
+            rightIntercepts[bucket] = (0.5 / (widths[bucket] / 2)) * centers[bucket] + 1;
+        }
+    }
+
+    /**
+     * Normalize the provided raw data point value into one of three categories.
+     * @param value The raw data point value that should be normalized
+     * @return The normalized category value (1, 2 or 3) or 0 if the value can not be normalized
+     */
+    public int normalize(double value) {
+        return value < minMedium ? 1 : value <= maxMedium ? 2 : value > maxMedium ? 3 : 0;
+    }
+
+    /**
+     * Get the certainty that can be assigned to the provided value.
+     * @param value A value (part of the raw data point set) whose certainty will be determined
+     * @return The certainty for the provided data point value, capped at 0.5 and 1
+     */
+    public double evidence(double value) {
+        int bucket = normalize(value);
+        double y = value < centers[bucket]
+                ? slopes[bucket] * value + leftIntercepts[bucket]
+                : -slopes[bucket] * value + rightIntercepts[bucket];
+
+        // Cap the result at 0.5 and 1, NaN stays NaN
+        return y < 0.5 ? 0.5 : y > 1 ? 1 : y;
+    }
+
+    /**
+     * Normalize many raw data point values at once.
+     * @param in The raw data point values
+     * @param out The array receiving the normalized category values. It needs to be at least as long as in.
+     */
+    public void normalize(double[] in, int[] out) {
+        for(int i = 0; i < in.length; i++) {
+            out[i] = normalize(in[i]);
+        }
+    }
+
+    /**
+     * Get the certainty of many raw data point values at once.
+     * @param in The raw data point values
+     * @param out The array receiving the certainties. It needs to be at least as long as in.
+     */
+    public void evidence(double[] in, double[] out) {
+        for(int i = 0; i < in.length; i++) {
+            out[i] = evidence(in[i]);
+        }
+    }
+}
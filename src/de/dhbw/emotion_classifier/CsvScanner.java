@@ -0,0 +1,284 @@
+package de.dhbw.emotion_classifier;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * The CsvScanner reads a CSV file in a single pass. The file is memory mapped and scanned byte by byte, numerical
+ * columns are parsed straight from the mapped bytes without creating Strings. Each data row is handed to a RowConsumer
+ * together with its label.
+ */
+class CsvScanner {
+    /**
+     * Receives the rows found by the scanner.
+     */
+    interface RowConsumer {
+        /**
+         * Called once per data row in file order.
+         * @param features The parsed numerical columns. The array is not reused by the scanner.
+         * @param label The label of the row or null if the label column is empty
+         */
+        void accept(double[] features, String label);
+    }
+
+    /**
+     * Largest part of the file that is mapped at once. Lines must be shorter than this.
+     */
+    private static final int WINDOW_SIZE = 1 << 30;
+
+    /**
+     * Up to this many distinct labels are remembered, so repeated labels do not create new Strings.
+     */
+    private static final int LABEL_CACHE_SIZE = 64;
+
+    /**
+     * Powers of ten that are exactly representable as double.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final byte separator;
+    private final int columnsBegin;
+    private final int columnsEnd;
+    private final int labelColumn;
+    private final boolean skipHeader;
+
+    /**
+     * Labels found so far, as bytes and as String
+     */
+    private final ArrayList<byte[]> labelBytes = new ArrayList<>();
+    private final ArrayList<String> labelStrings = new ArrayList<>();
+
+    /**
+     * Create a scanner for a CSV layout.
+     * @param separator The separator splits each column of the CSV file
+     * @param columnsBegin The column ID (beginning at 1) that marks the first numerical column that will be loaded
+     * @param columnsEnd The column ID that marks the last numerical column that will be loaded
+     * @param labelColumn The column ID (beginning at 1) that contains the category labels, 0 if there is none
+     * @param skipHeader If set, the first line will not be interpreted as data but as a header line
+     */
+    CsvScanner(char separator, int columnsBegin, int columnsEnd, int labelColumn, boolean skipHeader) {
+        this.separator = (byte) separator;
+        this.columnsBegin = columnsBegin;
+        this.columnsEnd = columnsEnd;
+        this.labelColumn = labelColumn;
+        this.skipHeader = skipHeader;
+    }
+
+    /**
+     * Scan a whole file and hand each data row to the consumer.
+     * @param file The file that will be scanned
+     * @param consumer The consumer receiving the rows
+     * @throws IOException If the file can not be read or holds a line longer than the mapping window
+     */
+    void scan(Path file, RowConsumer consumer) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long windowStart = 0;
+            boolean headerFound = false;
+
+            while(windowStart < fileSize) {
+                int windowLength = (int) Math.min(WINDOW_SIZE, fileSize - windowStart);
+                boolean lastWindow = windowStart + windowLength == fileSize;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+
+                int lineStart = 0;
+                for(int i = 0; i < windowLength; i++) {
+                    if(buffer.get(i) != '\n') {
+                        continue;
+                    }
+                    if(skipHeader && !headerFound) {
+                        headerFound = true;
+                    } else {
+                        scanLine(buffer, lineStart, i, consumer);
+                    }
+                    lineStart = i + 1;
+                }
+
+                if(lastWindow) {
+                    // The last line does not need a line break
+                    if(lineStart < windowLength) {
+                        if(skipHeader && !headerFound) {
+                            headerFound = true;
+                        } else {
+                            scanLine(buffer, lineStart, windowLength, consumer);
+                        }
+                    }
+                    break;
+                }
+                if(lineStart == 0) {
+                    throw new IOException("Line at byte " + windowStart + " of " + file + " is too long");
+                }
+
+                // Continue with the first line that did not fit completely into the window
+                windowStart += lineStart;
+            }
+        }
+    }
+
+    /**
+     * Split a single line into its columns and hand it to the consumer. Empty lines are skipped.
+     * @param buffer The mapped part of the file
+     * @param start Index of the first byte of the line
+     * @param end Index behind the last byte of the line (pointing to the line break)
+     * @param consumer The consumer receiving the row
+     */
+    private void scanLine(MappedByteBuffer buffer, int start, int end, RowConsumer consumer) {
+        if(end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        if(end == start) {
+            return;
+        }
+
+        double[] features = new double[columnsEnd - columnsBegin + 1];
+        String label = null;
+        int parsedColumns = 0;
+
+        int column = 1;
+        int fieldStart = start;
+        for(int i = start; i <= end; i++) {
+            if(i < end && buffer.get(i) != separator) {
+                continue;
+            }
+            if(column >= columnsBegin && column <= columnsEnd) {
+                features[column - columnsBegin] = parseDouble(buffer, fieldStart, i);
+                parsedColumns++;
+            }
+            if(column == labelColumn && i > fieldStart) {
+                label = label(buffer, fieldStart, i);
+            }
+            column++;
+            fieldStart = i + 1;
+        }
+
+        if(parsedColumns < features.length) {
+            throw new NumberFormatException("Missing numerical columns in line: " + new String(bytes(buffer, start, end), StandardCharsets.UTF_8));
+        }
+        consumer.accept(features, label);
+    }
+
+    /**
+     * Parse a decimal number of the form [-+]digits[.digits][(e|E)[-+]digits] directly from the buffer. Numbers that
+     * can not be converted exactly this way (too many digits, large exponents or other notations) are handed to
+     * Double.parseDouble.
+     * @param buffer The mapped part of the file
+     * @param start Index of the first byte of the number
+     * @param end Index behind the last byte of the number
+     * @return The parsed number
+     */
+    static double parseDouble(MappedByteBuffer buffer, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if(i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int significantDigits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        for(; i < end; i++) {
+            byte b = buffer.get(i);
+            if(b >= '0' && b <= '9') {
+                digits++;
+                if(mantissa != 0 || b != '0') {
+                    significantDigits++;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if(fraction) {
+                    fractionDigits++;
+                }
+            } else if(b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+
+        int exponent = 0;
+        if(digits > 0 && i < end && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if(i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                negativeExponent = buffer.get(i) == '-';
+                i++;
+            }
+            int exponentDigits = 0;
+            for(; i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9' && exponentDigits < 4; i++) {
+                exponent = exponent * 10 + (buffer.get(i) - '0');
+                exponentDigits++;
+            }
+            if(exponentDigits == 0) {
+                i = -1;
+            }
+            if(negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+
+        exponent -= fractionDigits;
+        // Fast path: mantissa and power of ten are exact doubles, so a single division or multiplication rounds correctly
+        if(i == end && digits > 0 && significantDigits <= 15 && exponent >= -22 && exponent <= 22) {
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+
+        return Double.parseDouble(new String(bytes(buffer, start, end), StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Get the label String of a field, reusing the String of an identical earlier label.
+     * @param buffer The mapped part of the file
+     * @param start Index of the first byte of the label
+     * @param end Index behind the last byte of the label
+     * @return The label
+     */
+    private String label(MappedByteBuffer buffer, int start, int end) {
+        for(int l = 0; l < labelBytes.size(); l++) {
+            byte[] known = labelBytes.get(l);
+            if(known.length != end - start) {
+                continue;
+            }
+            int i = 0;
+            while(i < known.length && known[i] == buffer.get(start + i)) {
+                i++;
+            }
+            if(i == known.length) {
+                return labelStrings.get(l);
+            }
+        }
+
+        byte[] bytes = bytes(buffer, start, end);
+        String label = new String(bytes, StandardCharsets.UTF_8);
+        if(labelBytes.size() < LABEL_CACHE_SIZE) {
+            labelBytes.add(bytes);
+            labelStrings.add(label);
+        }
+        return label;
+    }
+
+    /**
+     * Copy a range of the buffer.
+     * @param buffer The mapped part of the file
+     * @param start Index of the first byte
+     * @param end Index behind the last byte
+     * @return The copied bytes
+     */
+    private static byte[] bytes(MappedByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for(int i = start; i < end; i++) {
+            bytes[i - start] = buffer.get(i);
+        }
+        return bytes;
+    }
+}
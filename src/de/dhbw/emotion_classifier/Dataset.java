@@ -0,0 +1,174 @@
+package de.dhbw.emotion_classifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The Dataset stores input vectors column by column. Each feature is held in one contiguous double array, so scanning a
+ * column (e.g. while normalizing it) touches memory sequentially and the heap only holds one array per feature instead
+ * of one array per row. Rows can still be accessed through the row accessors.
+ */
+public class Dataset implements FeatureTable {
+    /**
+     * The values by column and row. The arrays may be longer than the number of rows to leave room for new rows.
+     */
+    private double[][] columns;
+
+    /**
+     * The number of rows stored in the dataset
+     */
+    private int rowCount = 0;
+
+    /**
+     * Create an empty dataset.
+     * @param columnCount The number of columns (features) of each row
+     */
+    public Dataset(int columnCount) {
+        this(columnCount, 16);
+    }
+
+    /**
+     * Create an empty dataset with room for a number of rows.
+     * @param columnCount The number of columns (features) of each row
+     * @param capacity The number of rows that can be added before the columns need to grow
+     */
+    public Dataset(int columnCount, int capacity) {
+        columns = new double[columnCount][Math.max(1, capacity)];
+    }
+
+    /**
+     * Create a dataset from a list of rows.
+     * @param rows The input vectors, all of the same length
+     * @return The dataset holding a copy of the rows
+     */
+    public static Dataset fromRows(ArrayList<double[]> rows) {
+        Dataset dataset = new Dataset(rows.isEmpty() ? 0 : rows.get(0).length, rows.size());
+        for(double[] row: rows) {
+            dataset.addRow(row);
+        }
+        return dataset;
+    }
+
+    /**
+     * Add a row to the end of the dataset.
+     * @param row The input vector. Its values are copied.
+     */
+    public void addRow(double[] row) {
+        ensureCapacity(rowCount + 1);
+        for(int column = 0; column < columns.length; column++) {
+            columns[column][rowCount] = row[column];
+        }
+        rowCount++;
+    }
+
+    /**
+     * Add all rows of another dataset to the end of this dataset.
+     * @param other The dataset whose rows will be added. It needs to have the same number of columns.
+     */
+    public void addAll(Dataset other) {
+        ensureCapacity(rowCount + other.rowCount);
+        for(int column = 0; column < columns.length; column++) {
+            System.arraycopy(other.columns[column], 0, columns[column], rowCount, other.rowCount);
+        }
+        rowCount += other.rowCount;
+    }
+
+    /**
+     * Grow the columns if they can not hold the requested number of rows.
+     * @param capacity The number of rows that need to fit
+     */
+    private void ensureCapacity(int capacity) {
+        if(columns.length > 0 && columns[0].length < capacity) {
+            int newCapacity = Math.max(capacity, columns[0].length * 2);
+            for(int column = 0; column < columns.length; column++) {
+                columns[column] = Arrays.copyOf(columns[column], newCapacity);
+            }
+        }
+    }
+
+    /**
+     * Create a deep copy of the dataset.
+     * @return The copy
+     */
+    public Dataset copy() {
+        Dataset copy = new Dataset(columns.length, rowCount);
+        for(int column = 0; column < columns.length; column++) {
+            System.arraycopy(columns[column], 0, copy.columns[column], 0, rowCount);
+        }
+        copy.rowCount = rowCount;
+        return copy;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * Get a single value.
+     * @param row The row ID starting at 0
+     * @param column The column ID starting at 0
+     * @return The value
+     */
+    @Override
+    public double get(int row, int column) {
+        return columns[column][row];
+    }
+
+    /**
+     * Set a single value.
+     * @param row The row ID starting at 0
+     * @param column The column ID starting at 0
+     * @param value The new value
+     */
+    public void set(int row, int column, double value) {
+        columns[column][row] = value;
+    }
+
+    /**
+     * Get the backing array of a column. Only the first getRowCount() values belong to the dataset. Changes to the array
+     * change the dataset.
+     * @param column The column ID starting at 0
+     * @return The values of the column
+     */
+    public double[] getColumn(int column) {
+        return columns[column];
+    }
+
+    /**
+     * Get a row as an array.
+     * @param row The row ID starting at 0
+     * @return A new array holding the values of the row
+     */
+    public double[] getRow(int row) {
+        return getRow(row, new double[columns.length]);
+    }
+
+    /**
+     * Copy a row into an existing array, so iterating over many rows does not need to create a new array per row.
+     * @param row The row ID starting at 0
+     * @param target The array the values are copied into. It needs to hold at least getColumnCount() values.
+     * @return The target array
+     */
+    @Override
+    public double[] getRow(int row, double[] target) {
+        for(int column = 0; column < columns.length; column++) {
+            target[column] = columns[column][row];
+        }
+        return target;
+    }
+
+    /**
+     * Print each row and column of the dataset.
+     */
+    public void printTable() {
+        for(int row = 0; row < rowCount; row++) {
+            System.out.println(Arrays.toString(getRow(row)));
+        }
+    }
+}
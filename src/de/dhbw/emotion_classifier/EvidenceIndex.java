@@ -0,0 +1,246 @@
+package de.dhbw.emotion_classifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * The EvidenceIndex holds the evidence of every (column, normalized value) pair. The evidence that Classifier's
+ * calculateEvidence determines for a hit list only depends on the column and the normalized value that selected the
+ * hit list, so it can be computed once when the classification category table is created.
+ *
+ * For every category the index keeps how many of its table rows and how many of its pre-classified rows hold a
+ * normalized value in a column, together with the summed up evidence of those pre-classified rows. The evidence of a
+ * (column, value) pair is the average over all pairs of table row and pre-classified row inside the same category that
+ * both hold the value.
+ */
+public class EvidenceIndex {
+    /**
+     * Number of table rows per category holding a normalized value (second dimension) in a column (first dimension)
+     */
+    private HashMap<String, long[][]> tableCounts = new HashMap<>();
+
+    /**
+     * Number of pre-classified rows per category holding a normalized value (second dimension) in a column (first
+     * dimension)
+     */
+    private HashMap<String, long[][]> labelledCounts = new HashMap<>();
+
+    /**
+     * Summed up normalization evidence of the pre-classified rows per category holding a normalized value (second
+     * dimension) in a column (first dimension)
+     */
+    private HashMap<String, double[][]> labelledEvidences = new HashMap<>();
+
+    /**
+     * The resulting evidence by column and normalized value
+     */
+    private double[][] evidences;
+
+    /**
+     * The normalizers of all features, used to determine the evidence of each pre-classified row
+     */
+    private CompiledNormalizer[] compiledNormalizers;
+
+    /**
+     * Create the evidence index for a classification category table.
+     * @param normalizedData The normalized input vectors
+     * @param table The classification category table
+     * @param categories The list of all categories and their row IDs inside the raw data
+     * @param normalizers All normalizers that were generated globally for each feature
+     */
+    public EvidenceIndex(FeatureTable normalizedData, HashMap<String, ArrayList<double[]>> table, HashMap<String, ArrayList<Integer>> categories, ArrayList<Normalizer> normalizers) {
+        int columns = normalizers.size();
+
+        compiledNormalizers = new CompiledNormalizer[columns];
+        for(int column = 0; column < columns; column++) {
+            compiledNormalizers[column] = normalizers.get(column).compile();
+        }
+
+        for(String category: table.keySet()) {
+            long[][] tableCount = new long[columns][4];
+            long[][] labelledCount = new long[columns][4];
+            double[][] labelledEvidence = new double[columns][4];
+
+            for(double[] categoryRow: table.get(category)) {
+                countTableRow(tableCount, categoryRow);
+            }
+
+            double[] labelledRow = new double[columns];
+            for(Integer rowId: categories.get(category)) {
+                countLabelledRow(labelledCount, labelledEvidence, normalizedData.getRow(rowId, labelledRow));
+            }
+
+            tableCounts.put(category, tableCount);
+            labelledCounts.put(category, labelledCount);
+            labelledEvidences.put(category, labelledEvidence);
+        }
+
+        evidences = new double[columns][4];
+        aggregateEvidences();
+    }
+
+    /**
+     * Create a copy of another index that new rows can be counted into without changing the other index. Only the
+     * aggregates of categories that are counted into are copied deeply (see copyOnWrite).
+     * @param other The index that will be copied
+     */
+    private EvidenceIndex(EvidenceIndex other) {
+        compiledNormalizers = other.compiledNormalizers;
+        tableCounts.putAll(other.tableCounts);
+        labelledCounts.putAll(other.labelledCounts);
+        labelledEvidences.putAll(other.labelledEvidences);
+        evidences = new double[other.evidences.length][4];
+    }
+
+    /**
+     * Create a new index that additionally counts new table rows and pre-classified rows. This index is not changed, so
+     * it can still be used while the new one is created. The time needed depends on the number of new rows, columns and
+     * categories, but not on the number of rows counted so far.
+     * @param tableRows The normalized rows that were added to the classification category table
+     * @param tableRowCategories The category of each new table row
+     * @param labelledRows The normalized rows that were pre-classified (including the ones added to the table)
+     * @param labelledRowCategories The category of each new pre-classified row
+     * @return The new index
+     */
+    EvidenceIndex withRows(List<double[]> tableRows, List<String> tableRowCategories, List<double[]> labelledRows, List<String> labelledRowCategories) {
+        EvidenceIndex index = new EvidenceIndex(this);
+        HashSet<String> copiedCategories = new HashSet<>();
+
+        for(int i = 0; i < tableRows.size(); i++) {
+            String category = tableRowCategories.get(i);
+            index.copyOnWrite(category, copiedCategories);
+            countTableRow(index.tableCounts.get(category), tableRows.get(i));
+        }
+        for(int i = 0; i < labelledRows.size(); i++) {
+            String category = labelledRowCategories.get(i);
+            index.copyOnWrite(category, copiedCategories);
+            index.countLabelledRow(index.labelledCounts.get(category), index.labelledEvidences.get(category), labelledRows.get(i));
+        }
+
+        index.aggregateEvidences();
+        return index;
+    }
+
+    /**
+     * Replace the aggregates of a category by copies the first time the category is counted into, as they may still be
+     * shared with the index this one was copied from. Categories that do not exist yet are created.
+     * @param category The category
+     * @param copiedCategories The categories whose aggregates were already copied
+     */
+    private void copyOnWrite(String category, HashSet<String> copiedCategories) {
+        if(!copiedCategories.add(category)) {
+            return;
+        }
+
+        int columns = evidences.length;
+        long[][] tableCount = new long[columns][];
+        long[][] labelledCount = new long[columns][];
+        double[][] labelledEvidence = new double[columns][];
+        for(int column = 0; column < columns; column++) {
+            tableCount[column] = tableCounts.containsKey(category) ? tableCounts.get(category)[column].clone() : new long[4];
+            labelledCount[column] = labelledCounts.containsKey(category) ? labelledCounts.get(category)[column].clone() : new long[4];
+            labelledEvidence[column] = labelledEvidences.containsKey(category) ? labelledEvidences.get(category)[column].clone() : new double[4];
+        }
+
+        tableCounts.put(category, tableCount);
+        labelledCounts.put(category, labelledCount);
+        labelledEvidences.put(category, labelledEvidence);
+    }
+
+    /**
+     * Count the normalized values of a table row.
+     * @param tableCount The table row counts of the row's category
+     * @param row The normalized table row
+     */
+    private static void countTableRow(long[][] tableCount, double[] row) {
+        for(int column = 0; column < tableCount.length; column++) {
+            int value = valueIndex(row[column]);
+            if(value > 0) {
+                tableCount[column][value]++;
+            }
+        }
+    }
+
+    /**
+     * Count the normalized values of a pre-classified row and sum up their normalization evidences.
+     * @param labelledCount The pre-classified row counts of the row's category
+     * @param labelledEvidence The summed up evidences of the row's category
+     * @param row The normalized pre-classified row
+     */
+    private void countLabelledRow(long[][] labelledCount, double[][] labelledEvidence, double[] row) {
+        for(int column = 0; column < labelledCount.length; column++) {
+            double labelledValue = row[column];
+            int value = valueIndex(labelledValue);
+            if(value > 0) {
+                labelledCount[column][value]++;
+                labelledEvidence[column][value] += compiledNormalizers[column].evidence(labelledValue);
+            }
+        }
+    }
+
+    /**
+     * Compute the evidence of every column and normalized value from the per category aggregates. The categories are
+     * summed up in the order of their names, so an index that was extended with withRows yields exactly the same
+     * evidences as one created from the whole table at once, whatever the iteration order of its maps is.
+     */
+    private void aggregateEvidences() {
+        String[] categoryOrder = tableCounts.keySet().toArray(new String[0]);
+        Arrays.sort(categoryOrder);
+
+        for(int column = 0; column < evidences.length; column++) {
+            for(int value = 1; value < 4; value++) {
+                evidences[column][value] = aggregateEvidence(categoryOrder, column, value);
+            }
+        }
+    }
+
+    /**
+     * Average the evidences of all pre-classified rows that are selected by the hit list of a normalized value in a
+     * column. Each pre-classified row counts once for every table row of its category that holds the same value.
+     * @param categoryOrder The names of all categories in the order they are summed up
+     * @param column The column (also referred to as feature index)
+     * @param value The normalized value (1, 2 or 3)
+     * @return The averaged evidence or NaN if no pre-classified row is selected
+     */
+    private double aggregateEvidence(String[] categoryOrder, int column, int value) {
+        double evidenceSum = 0;
+        double evidenceCount = 0;
+
+        for(String category: categoryOrder) {
+            long tableCount = tableCounts.get(category)[column][value];
+            evidenceSum += tableCount * labelledEvidences.get(category)[column][value];
+            evidenceCount += tableCount * labelledCounts.get(category)[column][value];
+        }
+
+        return evidenceSum / evidenceCount;
+    }
+
+    /**
+     * Get the evidence that the table rows selected by the hit list of a normalized value are "correct".
+     * @param column The column (also referred to as feature index) starting at 0
+     * @param normalizedValue The normalized value (1, 2 or 3) of the input vector in that column
+     * @return The evidence, NaN if no pre-classified row supports the value or the value is no valid normalized value
+     */
+    public double getEvidence(int column, double normalizedValue) {
+        int value = valueIndex(normalizedValue);
+        if(value == 0) {
+            return Double.NaN;
+        }
+        return evidences[column][value];
+    }
+
+    /**
+     * Map a normalized value to its index inside the aggregate arrays.
+     * @param normalizedValue The normalized value
+     * @return 1, 2 or 3 for valid normalized values, 0 otherwise
+     */
+    private static int valueIndex(double normalizedValue) {
+        if(normalizedValue == 1 || normalizedValue == 2 || normalizedValue == 3) {
+            return (int) normalizedValue;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,34 @@
+package de.dhbw.emotion_classifier;
+
+/**
+ * A FeatureTable gives row and column access to input vectors, independent of how they are stored.
+ */
+public interface FeatureTable {
+    /**
+     * Get the number of rows (input vectors).
+     * @return The number of rows
+     */
+    int getRowCount();
+
+    /**
+     * Get the number of columns (features) of each row.
+     * @return The number of columns
+     */
+    int getColumnCount();
+
+    /**
+     * Get a single value.
+     * @param row The row ID starting at 0
+     * @param column The column ID starting at 0
+     * @return The value
+     */
+    double get(int row, int column);
+
+    /**
+     * Copy a row into an existing array.
+     * @param row The row ID starting at 0
+     * @param target The array the values are copied into. It needs to hold at least getColumnCount() values.
+     * @return The target array
+     */
+    double[] getRow(int row, double[] target);
+}
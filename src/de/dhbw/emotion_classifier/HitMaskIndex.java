@@ -0,0 +1,147 @@
+package de.dhbw.emotion_classifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The HitMaskIndex holds the feature hit lists of a classification category table in packed form. As normalized values
+ * can only be 1, 2 or 3, every column has exactly three possible hit lists which are computed once when the index is
+ * created. Bit i of a hit mask is set if the i-th row of the table (in the table's iteration order) is hit.
+ */
+public class HitMaskIndex {
+    /**
+     * The hit masks by column and normalized value. Index 0 of the second dimension stays empty as it is no valid
+     * normalized value.
+     */
+    private BitSet[][] masks;
+
+    /**
+     * Mask returned for values that are no valid normalized value (e.g. NaN). No table row can be hit by those.
+     */
+    private static final BitSet EMPTY_MASK = new BitSet();
+
+    /**
+     * The number of rows inside the classification category table
+     */
+    private int size;
+
+    /**
+     * Create the hit masks of all columns for the provided table.
+     * @param table The classification category table that will function as the hit masks' template
+     */
+    public HitMaskIndex(HashMap<String, ArrayList<double[]>> table) {
+        int columns = 0;
+        for(ArrayList<double[]> categoryRows: table.values()) {
+            if(!categoryRows.isEmpty()) {
+                columns = categoryRows.get(0).length;
+                break;
+            }
+        }
+
+        masks = new BitSet[columns][4];
+        for(int column = 0; column < columns; column++) {
+            for(int value = 0; value < 4; value++) {
+                masks[column][value] = new BitSet();
+            }
+        }
+
+        // Set the bit of each table row inside the mask of the normalized value it holds in each column
+        int i = 0;
+        for(String category: table.keySet()) {
+            for(double[] row: table.get(category)) {
+                for(int column = 0; column < columns; column++) {
+                    int value = (int) row[column];
+                    if(value >= 1 && value <= 3) {
+                        masks[column][value].set(i);
+                    }
+                }
+                i++;
+            }
+        }
+        size = i;
+    }
+
+    /**
+     * Create an index from already computed hit masks.
+     * @param masks The hit masks by column and normalized value
+     * @param size The number of rows inside the classification category table
+     */
+    private HitMaskIndex(BitSet[][] masks, int size) {
+        this.masks = masks;
+        this.size = size;
+    }
+
+    /**
+     * Create a new index whose table additionally holds new rows behind the existing ones. This index is not changed, so
+     * it can still be used while the new one is created. Only the hit masks that get a new bit are copied, all others
+     * are shared between both indexes.
+     * @param rows The normalized rows appended to the classification category table
+     * @return The new index
+     */
+    HitMaskIndex withRows(List<double[]> rows) {
+        // An index of an empty table does not know its columns yet
+        int columns = masks.length == 0 && !rows.isEmpty() ? rows.get(0).length : masks.length;
+
+        BitSet[][] newMasks = new BitSet[columns][];
+        boolean[][] copied = new boolean[columns][4];
+        for(int column = 0; column < columns; column++) {
+            if(column < masks.length) {
+                // Only the references are copied, the masks themselves are copied once they get a new bit
+                newMasks[column] = Arrays.copyOf(masks[column], 4);
+            } else {
+                newMasks[column] = new BitSet[4];
+                for(int value = 0; value < 4; value++) {
+                    newMasks[column][value] = new BitSet();
+                    copied[column][value] = true;
+                }
+            }
+        }
+
+        int i = size;
+        for(double[] row: rows) {
+            for(int column = 0; column < columns; column++) {
+                int value = (int) row[column];
+                if(value >= 1 && value <= 3) {
+                    if(!copied[column][value]) {
+                        // clone() would trim the words of the shared mask while classifier threads read it
+                        newMasks[column][value] = BitSet.valueOf(masks[column][value].toLongArray());
+                        copied[column][value] = true;
+                    }
+                    newMasks[column][value].set(i);
+                }
+            }
+            i++;
+        }
+
+        return new HitMaskIndex(newMasks, i);
+    }
+
+    /**
+     * Get the hit mask of a normalized value inside a column. The returned mask is shared and must not be modified.
+     * @param column The column number (also referred to as the feature index) starting at 0
+     * @param normalizedValue The normalized value (1, 2 or 3) that is looked up
+     * @return The hit mask, having the bit of each table row set whose column holds the same normalized value. Empty if
+     * the table has no rows.
+     */
+    public BitSet getHitMask(int column, double normalizedValue) {
+        // An empty table has no masks, no row can be hit
+        if(size == 0) {
+            return EMPTY_MASK;
+        }
+        if(normalizedValue == 1 || normalizedValue == 2 || normalizedValue == 3) {
+            return masks[column][(int) normalizedValue];
+        }
+        return EMPTY_MASK;
+    }
+
+    /**
+     * Get the number of rows inside the classification category table, which is also the size of every hit mask.
+     * @return The number of table rows
+     */
+    public int getSize() {
+        return size;
+    }
+}
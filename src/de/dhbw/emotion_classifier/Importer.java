@@ -3,7 +3,16 @@ package de.dhbw.emotion_classifier;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * The Importer can load any CSV file and extract its fields.
@@ -52,6 +61,245 @@ public class Importer {
         }
     }
 
+    /**
+     * Load the numerical columns and the category labels of a CSV file in a single pass. The file is memory mapped and
+     * numbers are parsed without creating Strings. The row IDs of the labels correspond to the indices of the loaded
+     * data rows, the header line is not counted.
+     * @param filename The filename (and path) of the file that will be loaded
+     * @param separator The separator splits each column of the CSV file
+     * @param columnsBegin The column ID (beginning at 1) that marks the first numerical column that will be loaded
+     * @param columnsEnd The column ID that marks the last numerical column that will be loaded
+     * @param labelColumn The column ID (beginning at 1) that contains the category labels
+     * @param skipHeader If set, the first line will not be interpreted as data but as a header line
+     * @return The loaded data rows and categories structure
+     * @throws IllegalArgumentException If the columns are invalid (see ColumnSpec)
+     */
+    public static LabelledData loadLabelledCSV(String filename, char separator, int columnsBegin, int columnsEnd, int labelColumn, boolean skipHeader) {
+        return Importer.loadLabelledCSV(filename, new ColumnSpec(separator, columnsBegin, columnsEnd, labelColumn, skipHeader));
+    }
+
+    /**
+     * Load the numerical columns and the category labels of a CSV file in a single pass, see
+     * loadLabelledCSV(String, char, int, int, int, boolean). The column statistics are gathered in the same pass.
+     * @param filename The filename (and path) of the file that will be loaded
+     * @param spec The layout of the CSV file
+     * @return The loaded data rows, categories structure and column statistics
+     */
+    public static LabelledData loadLabelledCSV(String filename, ColumnSpec spec) {
+        try {
+            return Importer.loadShard(Paths.get(filename), spec);
+
+        } catch (IOException e) {
+            e.printStackTrace();
+
+            return null;
+        }
+    }
+
+    /**
+     * Load only the labelled rows of a CSV file, while the column statistics are gathered over all rows. This is enough
+     * to set up the Normalizers and the classification category table, the unlabelled rows can then be classified as a
+     * stream (see ClassificationPipeline) without holding the whole file in memory.
+     * @param filename The filename (and path) of the file that will be loaded
+     * @param spec The layout of the CSV file
+     * @return The labelled data rows, a categories structure whose row IDs refer to them and the column statistics of
+     * all rows
+     */
+    public static LabelledData loadLabelledRows(String filename, ColumnSpec spec) {
+        Dataset dataset = new Dataset(spec.getColumns());
+        HashMap<String, ArrayList<Integer>> categories = new HashMap<>();
+        ColumnStatistics statistics = new ColumnStatistics(spec.getColumns());
+
+        try {
+            new CsvScanner(spec.getSeparator(), spec.getColumnsBegin(), spec.getColumnsEnd(), spec.getLabelColumn(), spec.isSkipHeader()).scan(Paths.get(filename), (features, label) -> {
+                if(label != null) {
+                    Importer.insertCategory(categories, label, dataset.getRowCount());
+                    dataset.addRow(features);
+                }
+                statistics.add(features);
+            });
+
+            return new LabelledData(dataset, categories, statistics);
+
+        } catch (IOException e) {
+            e.printStackTrace();
+
+            return null;
+        }
+    }
+
+    /**
+     * Load many CSV files (shards) of the same layout concurrently. Each shard is parsed on its own and gathers its own
+     * column statistics. Afterwards the shards are concatenated in the order of their file names and their statistics
+     * are merged, so the Normalizers can be set up without another pass over the data.
+     * @param directoryOrGlob A directory whose files are all loaded or a glob pattern for the file names inside a
+     *                        directory (e.g. "data/2024-05-*.csv"). Only the file name part may contain a pattern.
+     * @param spec The layout of the CSV files
+     * @param executor The executor that parses the shards
+     * @return The loaded data rows, categories structure and column statistics of all shards together
+     */
+    public static LabelledData loadShards(String directoryOrGlob, ColumnSpec spec, ExecutorService executor) {
+        try {
+            List<Path> shards = Importer.findShards(directoryOrGlob);
+
+            List<Future<LabelledData>> parsedShards = new ArrayList<>();
+            for(Path shard: shards) {
+                parsedShards.add(executor.submit(() -> Importer.loadShard(shard, spec)));
+            }
+
+            Dataset dataset = new Dataset(spec.getColumns());
+            HashMap<String, ArrayList<Integer>> categories = new HashMap<>();
+            ColumnStatistics statistics = new ColumnStatistics(spec.getColumns());
+
+            for(Future<LabelledData> parsedShard: parsedShards) {
+                LabelledData shardData = parsedShard.get();
+
+                // Row IDs of a shard start after the rows of all previous shards
+                int offset = dataset.getRowCount();
+                for(String category: shardData.getCategories().keySet()) {
+                    for(Integer rowId: shardData.getCategories().get(category)) {
+                        Importer.insertCategory(categories, category, offset + rowId);
+                    }
+                }
+                dataset.addAll(shardData.getDataset());
+                statistics.merge(shardData.getStatistics());
+            }
+
+            return new LabelledData(dataset, categories, statistics);
+
+        } catch (IOException | ExecutionException e) {
+            e.printStackTrace();
+
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            return null;
+        }
+    }
+
+    /**
+     * Sketch every column of many CSV files (shards) of the same layout concurrently without keeping their rows. Each
+     * shard is scanned into its own sketches, which are merged afterwards. This allows Normalizers to be fitted on data
+     * that does not fit into memory.
+     * @param directoryOrGlob A directory whose files are all scanned or a glob pattern for the file names inside a
+     *                        directory (e.g. "data/2024-05-*.csv"). Only the file name part may contain a pattern.
+     * @param spec The layout of the CSV files
+     * @param executor The executor that scans the shards
+     * @return One sketch per column over all shards
+     */
+    public static QuantileSketch[] sketchShards(String directoryOrGlob, ColumnSpec spec, ExecutorService executor) {
+        try {
+            List<Future<QuantileSketch[]>> scannedShards = new ArrayList<>();
+            for(Path shard: Importer.findShards(directoryOrGlob)) {
+                scannedShards.add(executor.submit(() -> Importer.sketchShard(shard, spec)));
+            }
+
+            QuantileSketch[] sketches = Importer.createSketches(spec.getColumns());
+            for(Future<QuantileSketch[]> scannedShard: scannedShards) {
+                QuantileSketch[] shardSketches = scannedShard.get();
+                for(int column = 0; column < sketches.length; column++) {
+                    sketches[column].merge(shardSketches[column]);
+                }
+            }
+
+            return sketches;
+
+        } catch (IOException | ExecutionException e) {
+            e.printStackTrace();
+
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            return null;
+        }
+    }
+
+    /**
+     * Find the shard files that match a directory or glob pattern.
+     * @param directoryOrGlob A directory or a glob pattern for the file names inside a directory
+     * @return The matching regular files sorted by name
+     * @throws IOException If the directory can not be listed
+     */
+    private static List<Path> findShards(String directoryOrGlob) throws IOException {
+        Path path = Paths.get(directoryOrGlob);
+        Path directory = path;
+        PathMatcher matcher = file -> true;
+
+        if(!Files.isDirectory(path)) {
+            directory = path.getParent() == null ? Paths.get(".") : path.getParent();
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + path.getFileName().toString());
+        }
+
+        List<Path> shards = new ArrayList<>();
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for(Path file: files) {
+                if(Files.isRegularFile(file) && matcher.matches(file.getFileName())) {
+                    shards.add(file);
+                }
+            }
+        }
+        Collections.sort(shards);
+
+        return shards;
+    }
+
+    /**
+     * Load a single CSV file together with its column statistics.
+     * @param file The file that will be loaded
+     * @param spec The layout of the CSV file
+     * @return The loaded data rows, categories structure and column statistics
+     * @throws IOException If the file can not be read
+     */
+    private static LabelledData loadShard(Path file, ColumnSpec spec) throws IOException {
+        Dataset dataset = new Dataset(spec.getColumns());
+        HashMap<String, ArrayList<Integer>> categories = new HashMap<>();
+        ColumnStatistics statistics = new ColumnStatistics(spec.getColumns());
+
+        new CsvScanner(spec.getSeparator(), spec.getColumnsBegin(), spec.getColumnsEnd(), spec.getLabelColumn(), spec.isSkipHeader()).scan(file, (features, label) -> {
+            if(label != null) {
+                Importer.insertCategory(categories, label, dataset.getRowCount());
+            }
+            dataset.addRow(features);
+            statistics.add(features);
+        });
+
+        return new LabelledData(dataset, categories, statistics);
+    }
+
+    /**
+     * Sketch every column of a single CSV file without keeping its rows.
+     * @param file The file that will be scanned
+     * @param spec The layout of the CSV file
+     * @return One sketch per column
+     * @throws IOException If the file can not be read
+     */
+    private static QuantileSketch[] sketchShard(Path file, ColumnSpec spec) throws IOException {
+        QuantileSketch[] sketches = Importer.createSketches(spec.getColumns());
+
+        new CsvScanner(spec.getSeparator(), spec.getColumnsBegin(), spec.getColumnsEnd(), spec.getLabelColumn(), spec.isSkipHeader()).scan(file, (features, label) -> {
+            for(int column = 0; column < sketches.length; column++) {
+                sketches[column].add(features[column]);
+            }
+        });
+
+        return sketches;
+    }
+
+    /**
+     * Create empty sketches.
+     * @param columns The number of columns
+     * @return One empty sketch per column
+     */
+    private static QuantileSketch[] createSketches(int columns) {
+        QuantileSketch[] sketches = new QuantileSketch[columns];
+        for(int column = 0; column < columns; column++) {
+            sketches[column] = new QuantileSketch();
+        }
+        return sketches;
+    }
+
     /**
      * Load any CSV file containing alpha-numerical (String) values in the specified columns range.
      * @param filename The filename (and path) of the file that will be loaded
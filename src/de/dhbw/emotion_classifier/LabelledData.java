@@ -0,0 +1,58 @@
+package de.dhbw.emotion_classifier;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * LabelledData holds the input vectors of a data file together with the category labels that were found for them.
+ */
+public class LabelledData {
+    private Dataset dataset;
+    private HashMap<String, ArrayList<Integer>> categories;
+    private ColumnStatistics statistics;
+
+    /**
+     * Create labelled data.
+     * @param dataset The input vectors
+     * @param categories The categories structure holding all category labels and their data row IDs
+     */
+    public LabelledData(Dataset dataset, HashMap<String, ArrayList<Integer>> categories) {
+        this(dataset, categories, null);
+    }
+
+    /**
+     * Create labelled data whose column statistics were gathered while loading.
+     * @param dataset The input vectors
+     * @param categories The categories structure holding all category labels and their data row IDs
+     * @param statistics The statistics of all columns of the input vectors
+     */
+    public LabelledData(Dataset dataset, HashMap<String, ArrayList<Integer>> categories, ColumnStatistics statistics) {
+        this.dataset = dataset;
+        this.categories = categories;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Get the input vectors.
+     * @return The data rows in columnar form
+     */
+    public Dataset getDataset() {
+        return dataset;
+    }
+
+    /**
+     * Get the category labels. The row IDs correspond to the row IDs inside the dataset.
+     * @return The categories structure holding all category labels and their data row IDs
+     */
+    public HashMap<String, ArrayList<Integer>> getCategories() {
+        return categories;
+    }
+
+    /**
+     * Get the column statistics gathered while loading.
+     * @return The statistics of all columns or null if none were gathered
+     */
+    public ColumnStatistics getStatistics() {
+        return statistics;
+    }
+}
@@ -1,110 +1,161 @@
 package de.dhbw.emotion_classifier;
 
-import dempster.*;
-
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Main {
+    /**
+     * Checks whether the input argument points to many input file shards instead of a single file.
+     * @param input The first program argument
+     * @return True if the argument is a directory or contains a glob pattern
+     */
+    private static boolean isShardPattern(String input) {
+        return new File(input).isDirectory() || input.matches(".*[*?\\[{].*");
+    }
+
+    /**
+     * Print the plausibility of every table row and the detected category of an input vector.
+     * @param model The classification model the input vector was classified with
+     * @param rowId The row ID of the input vector starting at 0
+     * @param plausibilities The plausibility of each table row
+     * @param detectedRow The index of the most plausible table row
+     */
+    private static void printResult(ClassificationModel model, long rowId, double[] plausibilities, int detectedRow) {
+        for(int i = 0; i < plausibilities.length; i++) {
+            System.out.println("Plausibility of " + model.getRowName(i) + ": " + plausibilities[i]);
+        }
+        System.out.println("=> Detected category for input vector " + rowId + ": " + model.getRowName(detectedRow));
+        System.out.println("\n");
+    }
+
     public static void main(String[] args) throws Exception {
         String filename = "a.csv";
 
-        if(args.length < 1) {
-            // Try to load default file
+        // The optional second argument specifies the feature and label columns, e.g. "2-4:5"
+        ColumnSpec columnSpec = new ColumnSpec(';', 2, 4, 5, true);
+        if(args.length >= 2) {
             try {
-                FileReader fr = new FileReader(filename);
-            } catch (FileNotFoundException e) {
-                System.out.println("Could not load default file 'a.csv'. Please provide a filename (and path) as the first argument. The path can be provided as an absolute or relative value from the programs execution directory.");
+                columnSpec = ColumnSpec.parse(args[1]);
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
                 System.exit(1);
             }
-        } else {
-            // Try to load a custom input file
-            filename = args[0];
-            try {
-                FileReader fr = new FileReader(filename);
-            } catch (FileNotFoundException e) {
-                System.out.println("Could not load custom file " + filename + ". Please provide a filename (and path) as the first argument. The path can be provided as an absolute or relative value from the programs execution directory.");
+        }
+
+        // The optional third argument "--pipeline" classifies the input file as a stream instead of loading it completely
+        boolean pipelined = args.length >= 3 && args[2].equals("--pipeline");
+
+        LabelledData labelledData;
+        if(args.length >= 1 && isShardPattern(args[0])) {
+            if(pipelined) {
+                System.out.println("The pipeline mode only supports a single input file.");
                 System.exit(1);
             }
-        }
 
-        // Import the required data columns of the input file
-        ArrayList<double[]> rawData = Importer.loadDoubleCSV(filename, ";", 2, 4, true);
-        System.out.println("Successfully loaded " + rawData.size() + " raw data vectors.\n");
+            // Load all shards matching the directory or glob pattern in parallel
+            ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            try {
+                labelledData = Importer.loadShards(args[0], columnSpec, executor);
+            } finally {
+                executor.shutdown();
+            }
 
-        // Import the category labels from the input file
-        HashMap<String, ArrayList<Integer>> categories = Importer.loadCategories(filename, ";", 5);
-        System.out.println("Successfully loaded the following category labels in [rows]:");
-        Importer.printCategories(categories);
-        System.out.println("\n");
+            if(labelledData == null || labelledData.getDataset().getRowCount() == 0) {
+                System.out.println("Could not load any shard matching " + args[0] + ". Please provide a directory or a glob pattern for the file names inside a directory as the first argument.");
+                System.exit(1);
+            }
+        } else {
+            if(args.length < 1) {
+                // Try to load default file
+                try {
+                    FileReader fr = new FileReader(filename);
+                } catch (FileNotFoundException e) {
+                    System.out.println("Could not load default file 'a.csv'. Please provide a filename (and path) as the first argument. The path can be provided as an absolute or relative value from the programs execution directory.");
+                    System.exit(1);
+                }
+            } else {
+                // Try to load a custom input file
+                filename = args[0];
+                try {
+                    FileReader fr = new FileReader(filename);
+                } catch (FileNotFoundException e) {
+                    System.out.println("Could not load custom file " + filename + ". Please provide a filename (and path) as the first argument. The path can be provided as an absolute or relative value from the programs execution directory.");
+                    System.exit(1);
+                }
+            }
+
+            if(pipelined) {
+                // Only the labelled rows are needed to create the classification table, all rows are classified later on.
+                // This pre-pass reads the whole file, so the pipeline bounds the memory, but does not print the first
+                // result any sooner.
+                labelledData = Importer.loadLabelledRows(filename, columnSpec);
+            } else {
+                // Import the required data columns and the category labels of the input file in one go
+                labelledData = Importer.loadLabelledCSV(filename, columnSpec);
+            }
+        }
+        Dataset rawData = labelledData.getDataset();
+        HashMap<String, ArrayList<Integer>> categories = labelledData.getCategories();
+        if(pipelined) {
+            System.out.println("Successfully loaded " + rawData.getRowCount() + " labelled raw data vectors.\n");
+        } else {
+            System.out.println("Successfully loaded " + rawData.getRowCount() + " raw data vectors.\n");
 
-        // Deep copy the raw data into a normalized data structure in order to preserve the original data
-        ArrayList<double[]> normalizedData = new ArrayList<>();
-        for(double[] row: rawData) {
-            normalizedData.add(row.clone());
+            System.out.println("Successfully loaded the following category labels in [rows]:");
+            Importer.printCategories(categories);
+            System.out.println("\n");
         }
 
-        // Create a Normalizer for each feature and normalize each feature column
-        ArrayList<Normalizer> normalizers = new ArrayList<>();
+        // The header line is not counted as a labelled row, so a file without any labels leaves the table empty
+        if(categories.isEmpty()) {
+            System.out.println("Could not find any labelled rows in column " + columnSpec.getLabelColumn() + ". Please provide at least one labelled row to create the classification table from.");
+            System.exit(1);
+        }
 
-        for(int i = 0; i < normalizedData.get(0).length; i++) {
-            Normalizer n = new Normalizer(0, 0);
-            n.setBoundaries(normalizedData, i);
+        // Create a Normalizer for each feature from the statistics gathered while loading
+        ArrayList<Normalizer> normalizers = Normalizer.fitAll(labelledData.getStatistics());
 
-            n.normalizeColumn(normalizedData, i);
-            normalizers.add(n);
+        for(int i = 0; i < normalizers.size(); i++) {
+            Normalizer n = normalizers.get(i);
 
             System.out.println("Created a normalizer for feature "+ i + ": [" + n.minSmall + " --- " + n.minMedium + "][" + n.minMedium + " --- " + n.maxMedium + "][" + n.maxMedium + " --- " + n.maxLarge + "]");
         }
         System.out.println("\n");
 
-        // Create classification table
+        // Normalize all features of the raw data into packed form (2 bits per feature) in one parallel pass, the
+        // original data is preserved
+        PackedVectors normalizedData = PackedVectors.normalize(rawData, normalizers, false, true);
+
+        // Create classification table and compile it into the classification model. The model precomputes the hit lists
+        // and evidences of every feature, as each feature can only take three normalized values
         HashMap<String, ArrayList<double[]>> table = Classifier.createTable(normalizedData, categories);
+        ClassificationModel model = new ClassificationModel(normalizedData, table, categories, normalizers);
         System.out.println("Successfully created the classification table with the following categories:");
-        Classifier.printTable(table);
+        model.printTable();
         System.out.println("\n");
 
-        // We can now process each input vector and
-        ArrayList<ArrayList> hitLists = new ArrayList<>();
-        for(double[] row: normalizedData) {
-            // Create a hit list of all features inside the current data row and store it in a hit list collection
-            ArrayList<ArrayList> hitListCollection = new ArrayList<>();
-            for(int i = 0; i < normalizedData.get(0).length; i++) {
-                hitListCollection.add(Classifier.createFeatureHitList(row, table, i));
-            }
-            hitLists.add(hitListCollection);
-
-            // Gather evidences for all categories an input vector can be classified as
-            ArrayList<Double> evidences = new ArrayList<>();
-            for(int i = 0; i < normalizedData.get(0).length; i++) {
-                evidences.add(Classifier.calculateEvidence(rawData, normalizedData, hitLists.get(0), table, categories, i, row, normalizers));
-            }
-
-            // Create a measure for each input vector feature and accumulate them using the Dempster-Schafer rule
-            dempster.DempsterHandler dH = new DempsterHandler(hitListCollection.get(0).size());
-            for(int i = 0; i < normalizedData.get(0).length; i++) {
-                Measure m = dH.addMeasure();
-                m.addEntry(hitListCollection.get(i), evidences.get(i));
-                dH.accumulateAllMeasures();
-            }
+        if(pipelined) {
+            // Parse, normalize, classify and print the input vectors concurrently, classifying on every processor
+            ClassificationPipeline pipeline = new ClassificationPipeline(model, normalizers, 1024, Runtime.getRuntime().availableProcessors(), Executors.defaultThreadFactory());
+            pipeline.run(Paths.get(filename), columnSpec, (rowId, plausibilities, detectedRow) -> printResult(model, rowId, plausibilities, detectedRow));
+            return;
+        }
 
-            // Calculate all the classification categorie's plausabilities and determine the highest one.
-            // The highest one will be chosen as this input vectors correct classification.
-            double highestPlausability = 0;
-            int highestPlausabilityIndex = 0;
-            for(int i = 0; i < hitListCollection.get(0).size(); i++) {
-                double plausability = dH.getFirstMeasure().calculatePlausability(i);
-                System.out.println("Plausibility of " + Classifier.getTableRowName(table, i) + ": " + plausability);
-
-                if(highestPlausability < plausability) {
-                    highestPlausability = plausability;
-                    highestPlausabilityIndex = i;
-                }
-            }
-            System.out.println("=> Detected category for input vector " + normalizedData.indexOf(row) + ": " + Classifier.getTableRowName(table, highestPlausabilityIndex));
-            System.out.println("\n");
+        // Classify all input vectors in parallel and print the results in input order as soon as their chunk is done
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService classificationExecutor = Executors.newFixedThreadPool(threads);
+        try {
+            // Two chunks per thread keep every thread busy while the results are printed. Each chunk in flight holds
+            // 1024 * model.getSize() plausibilities, so this needs 16 KiB per table row and thread.
+            BatchClassifier.classifyAll(normalizedData, model, classificationExecutor, 2 * threads, (rowId, plausibilities, detectedRow) -> printResult(model, rowId, plausibilities, detectedRow));
+        } finally {
+            classificationExecutor.shutdown();
         }
     }
 }
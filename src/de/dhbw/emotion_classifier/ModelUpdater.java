@@ -0,0 +1,105 @@
+package de.dhbw.emotion_classifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The ModelUpdater adds newly labelled rows to a live ClassificationModel without creating the model from scratch. The
+ * Normalizers stay as they were fitted, so the new rows are normalized the same way as the rows of the model. Each
+ * update creates a new model version from the latest one in time proportional to the number of new rows and publishes
+ * it atomically. Threads classifying with getModel() are never blocked and always see one complete version.
+ *
+ * Only one updater can extend a model: as soon as one of them added rows, any other updater created for the same model
+ * (or an older version of it) fails with an IllegalStateException.
+ */
+public class ModelUpdater {
+    private final AtomicReference<ClassificationModel> model;
+
+    /**
+     * The normalizers of all features that the model was created with
+     */
+    private final CompiledNormalizer[] normalizers;
+
+    /**
+     * Holds the rows of every category of the table, so duplicates of new rows are found in constant time
+     */
+    private final TableBuilder table = new TableBuilder();
+
+    /**
+     * Create an updater for a model.
+     * @param model The first version of the model
+     * @param normalizers All normalizers that the model was created with
+     */
+    public ModelUpdater(ClassificationModel model, ArrayList<Normalizer> normalizers) {
+        this.model = new AtomicReference<>(model);
+
+        this.normalizers = new CompiledNormalizer[normalizers.size()];
+        for(int column = 0; column < normalizers.size(); column++) {
+            this.normalizers[column] = normalizers.get(column).compile();
+        }
+
+        for(int rowId = 0; rowId < model.getSize(); rowId++) {
+            table.addRow(model.getCategoryName(model.getRowCategory(rowId)), model.getRow(rowId, new double[model.getColumnCount()]));
+        }
+    }
+
+    /**
+     * Get the latest version of the model.
+     * @return The model
+     */
+    public ClassificationModel getModel() {
+        return model.get();
+    }
+
+    /**
+     * Add newly labelled rows to the model. Rows that differ from all table rows of their category are appended to the
+     * classification category table, all rows update the evidences. The rows get the input vector IDs behind the ones
+     * known to the model. Concurrent updates are applied one after another. If the update fails, neither the model nor
+     * the updater is changed and the rows can be added again.
+     * @param rawRows The labelled input vectors in raw (not normalized) form
+     * @param labels The category label of each input vector
+     * @return The new version of the model, which is published before the method returns
+     * @throws IllegalArgumentException If the rows do not match the features of the model or a row has no label
+     * @throws IllegalStateException If the model was already extended by another updater
+     */
+    public synchronized ClassificationModel addLabelledRows(FeatureTable rawRows, List<String> labels) {
+        if(rawRows.getColumnCount() != normalizers.length) {
+            throw new IllegalArgumentException("The rows have " + rawRows.getColumnCount() + " features, but the model has " + normalizers.length + ".");
+        }
+        if(labels.size() != rawRows.getRowCount()) {
+            throw new IllegalArgumentException("Got " + labels.size() + " labels for " + rawRows.getRowCount() + " rows.");
+        }
+        if(labels.contains(null)) {
+            throw new IllegalArgumentException("Row " + labels.indexOf(null) + " has no label.");
+        }
+
+        List<double[]> tableRows = new ArrayList<>();
+        List<String> tableRowCategories = new ArrayList<>();
+        List<double[]> labelledRows = new ArrayList<>();
+
+        // Duplicates inside the new rows are found in a scratch builder, the table only learns the rows once they are
+        // part of a published model
+        TableBuilder newRows = new TableBuilder();
+        for(int rowId = 0; rowId < rawRows.getRowCount(); rowId++) {
+            double[] row = rawRows.getRow(rowId, new double[rawRows.getColumnCount()]);
+            for(int column = 0; column < normalizers.length; column++) {
+                row[column] = normalizers[column].normalize(row[column]);
+            }
+
+            labelledRows.add(row);
+            if(!table.containsRow(labels.get(rowId), row) && newRows.addRow(labels.get(rowId), row)) {
+                tableRows.add(row);
+                tableRowCategories.add(labels.get(rowId));
+            }
+        }
+
+        ClassificationModel next = new ClassificationModel(model.get(), tableRows, tableRowCategories, labelledRows, labels);
+        model.set(next);
+
+        for(int i = 0; i < tableRows.size(); i++) {
+            table.addRow(tableRowCategories.get(i), tableRows.get(i));
+        }
+        return next;
+    }
+}
@@ -2,8 +2,28 @@ package de.dhbw.emotion_classifier;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.stream.IntStream;
 
 public class Normalizer {
+    /**
+     * The rule used to derive the medium boundaries from a QuantileSketch.
+     */
+    public enum BoundaryMode {
+        /**
+         * The boundaries are derived from the mean and maximum, the same way setBoundaries does for the raw data.
+         */
+        MEAN,
+        /**
+         * The boundaries are the 1/3 and 2/3 quantiles, so each normalization category holds about a third of the values.
+         */
+        QUANTILE
+    }
+
+    /**
+     * Number of rows each parallel task of fitAll processes.
+     */
+    private static final int CHUNK_SIZE = 1 << 14;
+
     public double minMedium;
     public double maxMedium;
     public double minSmall;
@@ -67,6 +87,125 @@ public class Normalizer {
         this.maxMedium = average + (max - average) * 1/3;
     }
 
+    /**
+     * Set the normalizer's boundaries based on one column of the raw data stored in columnar form. The column is scanned
+     * sequentially.
+     * @param data The raw data points
+     * @param column The column that will be evaluated while setting the normalizer's boundaries
+     */
+    public void setBoundaries(Dataset data, int column) {
+        double min = Double.MAX_VALUE, max = Double.MIN_VALUE, sum = 0, average = 0;
+        double[] values = data.getColumn(column);
+
+        for(int row = 0; row < data.getRowCount(); row++) {
+            double fieldValue = values[row];
+
+            min = Double.min(min, fieldValue);
+            max = Double.max(max, fieldValue);
+
+            sum += fieldValue;
+        }
+
+        average = sum / data.getRowCount();
+
+        // Set the lower boundary for medium and upper border of medium accordingly
+        this.minMedium = average - average * 1/3;
+        this.maxMedium = average + (max - average) * 1/3;
+    }
+
+    /**
+     * Set the normalizer's boundaries based on the statistics gathered for one column of the raw data. This gives the
+     * same boundaries as setBoundaries(ArrayList, int) without another pass over the data.
+     * @param statistics The statistics of all columns of the raw data
+     * @param column The column whose statistics will be used
+     */
+    public void setBoundaries(ColumnStatistics statistics, int column) {
+        double max = statistics.getMax(column);
+        double average = statistics.getSum(column) / statistics.getCount();
+
+        // Set the lower boundary for medium and upper border of medium accordingly
+        this.minMedium = average - average * 1/3;
+        this.maxMedium = average + (max - average) * 1/3;
+    }
+
+    /**
+     * Set the normalizer's boundaries based on the sketch of one column of the raw data. The sketch only needs a fixed
+     * amount of memory, so the column does not need to be held in memory.
+     * @param sketch The sketch of the column
+     * @param mode The rule that derives the boundaries from the sketch
+     */
+    public void setBoundaries(QuantileSketch sketch, BoundaryMode mode) {
+        if(mode == BoundaryMode.QUANTILE) {
+            this.minMedium = sketch.getQuantile(1.0 / 3);
+            this.maxMedium = sketch.getQuantile(2.0 / 3);
+            return;
+        }
+
+        double max = sketch.getMax();
+        double average = sketch.getMean();
+
+        // Set the lower boundary for medium and upper border of medium accordingly
+        this.minMedium = average - average * 1/3;
+        this.maxMedium = average + (max - average) * 1/3;
+    }
+
+    /**
+     * Create a Normalizer for every column and set its boundaries. The statistics of all columns are gathered in one
+     * pass over the data, optionally as a parallel reduction over chunks of rows.
+     * @param data The raw data points
+     * @param parallel If set, the chunks are processed in parallel
+     * @return One Normalizer per column
+     */
+    public static ArrayList<Normalizer> fitAll(Dataset data, boolean parallel) {
+        int chunks = (data.getRowCount() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream chunkIds = IntStream.range(0, chunks);
+        if(parallel) {
+            chunkIds = chunkIds.parallel();
+        }
+
+        ColumnStatistics statistics = chunkIds
+                .mapToObj(chunk -> ColumnStatistics.of(data, chunk * CHUNK_SIZE, Math.min(data.getRowCount(), (chunk + 1) * CHUNK_SIZE)))
+                .reduce(new ColumnStatistics(data.getColumnCount()), (a, b) -> {
+                    ColumnStatistics merged = new ColumnStatistics(a.getColumns());
+                    merged.merge(a);
+                    merged.merge(b);
+                    return merged;
+                });
+
+        return Normalizer.fitAll(statistics);
+    }
+
+    /**
+     * Create a Normalizer for every column and set its boundaries based on already gathered statistics.
+     * @param statistics The statistics of all columns of the raw data
+     * @return One Normalizer per column
+     */
+    public static ArrayList<Normalizer> fitAll(ColumnStatistics statistics) {
+        ArrayList<Normalizer> normalizers = new ArrayList<>();
+        for(int column = 0; column < statistics.getColumns(); column++) {
+            Normalizer normalizer = new Normalizer(0, 0);
+            normalizer.setBoundaries(statistics, column);
+            normalizers.add(normalizer);
+        }
+        return normalizers;
+    }
+
+    /**
+     * Create a Normalizer for every column and set its boundaries based on sketches of the columns.
+     * @param sketches One sketch per column of the raw data
+     * @param mode The rule that derives the boundaries from the sketches
+     * @return One Normalizer per column
+     */
+    public static ArrayList<Normalizer> fitAll(QuantileSketch[] sketches, BoundaryMode mode) {
+        ArrayList<Normalizer> normalizers = new ArrayList<>();
+        for(QuantileSketch sketch: sketches) {
+            Normalizer normalizer = new Normalizer(0, 0);
+            normalizer.setBoundaries(sketch, mode);
+            normalizers.add(normalizer);
+        }
+        return normalizers;
+    }
+
     /**
      * Normalize the provided raw data point value into one of three categories. The normalizer's boundaries have to be
      * set before using this method!
@@ -98,6 +237,29 @@ public class Normalizer {
         return table;
     }
 
+    /**
+     * Normalize one column of the raw data points stored in columnar form. The column is scanned sequentially.
+     * @param data The raw data points
+     * @param columnId The column inside the dataset whose data points will be normalized
+     * @return The provided dataset in normalized form
+     */
+    public Dataset normalizeColumn(Dataset data, int columnId) {
+        double[] values = data.getColumn(columnId);
+        for(int row = 0; row < data.getRowCount(); row++) {
+            values[row] = normalize(values[row]);
+        }
+        return data;
+    }
+
+    /**
+     * Compile the normalizer into an immutable form that precomputes the constants of each normalization category. The
+     * boundaries have to be set before using this method!
+     * @return The compiled normalizer
+     */
+    public CompiledNormalizer compile() {
+        return new CompiledNormalizer(this);
+    }
+
     /**
      * Get the certainty that can be assigned to the provided value.
      * @param value A value (part of the raw data point set) whose certainty will be determined
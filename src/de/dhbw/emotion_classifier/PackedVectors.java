@@ -0,0 +1,175 @@
+package de.dhbw.emotion_classifier;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * PackedVectors store normalized input vectors with 2 bits per feature. A normalized value is always 1, 2 or 3 (0 is
+ * used for values that could not be normalized), so 32 features fit into one long word. Each row starts at a word
+ * boundary, so no word holds values of two rows. The words can be kept on the heap or off-heap in a direct buffer.
+ */
+public class PackedVectors implements FeatureTable {
+    private static final int BITS_PER_VALUE = 2;
+    private static final int VALUES_PER_WORD = Long.SIZE / BITS_PER_VALUE;
+    private static final long VALUE_MASK = (1L << BITS_PER_VALUE) - 1;
+
+    /**
+     * Number of rows each parallel task of normalize processes.
+     */
+    private static final int CHUNK_SIZE = 1 << 14;
+
+    private LongBuffer words;
+    private int rowCount;
+    private int columnCount;
+    private int wordsPerRow;
+
+    /**
+     * Create packed vectors with all values set to 0.
+     * @param rowCount The number of rows (input vectors)
+     * @param columnCount The number of columns (features) of each row
+     * @param offHeap If set, the words are stored in a direct buffer outside of the heap
+     * @throws IllegalArgumentException If the words do not fit into a single buffer
+     */
+    public PackedVectors(int rowCount, int columnCount, boolean offHeap) {
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.wordsPerRow = (columnCount + VALUES_PER_WORD - 1) / VALUES_PER_WORD;
+
+        // A LongBuffer is indexed by int and a direct buffer is allocated with an int number of bytes
+        long size = (long) rowCount * wordsPerRow;
+        long maxSize = offHeap ? Integer.MAX_VALUE / Long.BYTES : Integer.MAX_VALUE - 8;
+        if(size > maxSize) {
+            throw new IllegalArgumentException("Can not pack " + rowCount + " rows of " + columnCount + " columns, they need " + size + " words but at most " + maxSize + " fit into one " + (offHeap ? "direct " : "") + "buffer");
+        }
+
+        if(offHeap) {
+            words = ByteBuffer.allocateDirect((int) size * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        } else {
+            words = LongBuffer.wrap(new long[(int) size]);
+        }
+    }
+
+    /**
+     * Normalize raw input vectors straight into packed form, so no normalized copy of the raw data is needed. Each
+     * column is read sequentially.
+     * @param rawData The raw input vectors
+     * @param normalizers One normalizer per column whose boundaries are set
+     * @param offHeap If set, the words are stored in a direct buffer outside of the heap
+     * @return The normalized vectors
+     */
+    public static PackedVectors normalize(Dataset rawData, List<Normalizer> normalizers, boolean offHeap) {
+        return PackedVectors.normalize(rawData, normalizers, offHeap, false);
+    }
+
+    /**
+     * Normalize all columns of the raw input vectors straight into packed form in a single pass, optionally in parallel
+     * over chunks of rows. Every row has its own words, so chunks never write to the same word.
+     * @param rawData The raw input vectors
+     * @param normalizers One normalizer per column whose boundaries are set
+     * @param offHeap If set, the words are stored in a direct buffer outside of the heap
+     * @param parallel If set, the chunks are processed in parallel
+     * @return The normalized vectors
+     */
+    public static PackedVectors normalize(Dataset rawData, List<Normalizer> normalizers, boolean offHeap, boolean parallel) {
+        PackedVectors packed = new PackedVectors(rawData.getRowCount(), rawData.getColumnCount(), offHeap);
+
+        CompiledNormalizer[] compiledNormalizers = new CompiledNormalizer[rawData.getColumnCount()];
+        for(int column = 0; column < compiledNormalizers.length; column++) {
+            compiledNormalizers[column] = normalizers.get(column).compile();
+        }
+
+        int chunks = (rawData.getRowCount() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream chunkIds = IntStream.range(0, chunks);
+        if(parallel) {
+            chunkIds = chunkIds.parallel();
+        }
+        chunkIds.forEach(chunk -> {
+            int fromRow = chunk * CHUNK_SIZE;
+            int toRow = Math.min(rawData.getRowCount(), fromRow + CHUNK_SIZE);
+            for(int column = 0; column < rawData.getColumnCount(); column++) {
+                CompiledNormalizer normalizer = compiledNormalizers[column];
+                double[] values = rawData.getColumn(column);
+                for(int row = fromRow; row < toRow; row++) {
+                    packed.set(row, column, normalizer.normalize(values[row]));
+                }
+            }
+        });
+
+        return packed;
+    }
+
+    /**
+     * Pack input vectors that are already normalized.
+     * @param normalizedData The normalized input vectors
+     * @param offHeap If set, the words are stored in a direct buffer outside of the heap
+     * @return The packed vectors
+     */
+    public static PackedVectors pack(FeatureTable normalizedData, boolean offHeap) {
+        PackedVectors packed = new PackedVectors(normalizedData.getRowCount(), normalizedData.getColumnCount(), offHeap);
+        for(int row = 0; row < normalizedData.getRowCount(); row++) {
+            for(int column = 0; column < normalizedData.getColumnCount(); column++) {
+                packed.set(row, column, (int) normalizedData.get(row, column));
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Get a normalized value.
+     * @param row The row ID starting at 0
+     * @param column The column ID starting at 0
+     * @return The normalized value (1, 2 or 3, 0 if it could not be normalized)
+     */
+    public int getValue(int row, int column) {
+        long word = words.get(row * wordsPerRow + column / VALUES_PER_WORD);
+        return (int) ((word >>> shift(column)) & VALUE_MASK);
+    }
+
+    /**
+     * Set a normalized value.
+     * @param row The row ID starting at 0
+     * @param column The column ID starting at 0
+     * @param value The normalized value (1, 2 or 3). Values outside of 0 to 3 are stored as 0.
+     */
+    public void set(int row, int column, int value) {
+        long bits = (value >= 0 && value <= VALUE_MASK) ? value : 0;
+        int index = row * wordsPerRow + column / VALUES_PER_WORD;
+        long word = words.get(index) & ~(VALUE_MASK << shift(column));
+        words.put(index, word | (bits << shift(column)));
+    }
+
+    /**
+     * Get the position of a column's bits inside its word.
+     * @param column The column ID starting at 0
+     * @return The number of bits the value is shifted by
+     */
+    private static int shift(int column) {
+        return (column % VALUES_PER_WORD) * BITS_PER_VALUE;
+    }
+
+    @Override
+    public double get(int row, int column) {
+        return getValue(row, column);
+    }
+
+    @Override
+    public double[] getRow(int row, double[] target) {
+        for(int column = 0; column < columnCount; column++) {
+            target[column] = getValue(row, column);
+        }
+        return target;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnCount;
+    }
+}
@@ -0,0 +1,201 @@
+package de.dhbw.emotion_classifier;
+
+import java.util.Arrays;
+
+/**
+ * The QuantileSketch summarizes a column of raw values in bounded memory, so normalizer boundaries can be fitted on
+ * datasets that do not fit into the heap. Minimum, maximum, sum and count are tracked exactly, quantiles approximately.
+ *
+ * Values are collected in levels of at most k values. A value on level i stands for 2^i original values. Once a level
+ * is full it is sorted and every second value is promoted to the next level (compaction), alternating which half is
+ * kept. Memory therefore grows only with the logarithm of the number of values. Sketches of different threads or files
+ * can be merged.
+ */
+public class QuantileSketch {
+    private static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * Maximum number of values per level
+     */
+    private int k;
+
+    /**
+     * The values of each level and the number of values used on each level
+     */
+    private double[][] levels = new double[0][];
+    private int[] sizes = new int[0];
+
+    /**
+     * Decides per compaction whether the values at even or at odd positions are promoted
+     */
+    private boolean promoteOdd = false;
+
+    /**
+     * Exact statistics of all added values. The start values match the ones used by Normalizer's setBoundaries.
+     */
+    private double min = Double.MAX_VALUE;
+    private double max = Double.MIN_VALUE;
+    private double sum = 0;
+    private long count = 0;
+
+    /**
+     * Create a sketch with the default capacity per level.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a sketch.
+     * @param k The maximum number of values per level. Larger values give more accurate quantiles.
+     */
+    public QuantileSketch(int k) {
+        this.k = Math.max(2, k);
+    }
+
+    /**
+     * Add a raw value. NaN values are ignored.
+     * @param value The raw value
+     */
+    public void add(double value) {
+        if(Double.isNaN(value)) {
+            return;
+        }
+        min = Double.min(min, value);
+        max = Double.max(max, value);
+        sum += value;
+        count++;
+
+        append(0, value);
+        compact();
+    }
+
+    /**
+     * Merge another sketch into this one. The other sketch is not changed.
+     * @param other The sketch that will be merged
+     */
+    public void merge(QuantileSketch other) {
+        min = Double.min(min, other.min);
+        max = Double.max(max, other.max);
+        sum += other.sum;
+        count += other.count;
+
+        for(int level = 0; level < other.sizes.length; level++) {
+            for(int i = 0; i < other.sizes[level]; i++) {
+                append(level, other.levels[level][i]);
+            }
+        }
+        compact();
+    }
+
+    /**
+     * Add a value to a level, creating the level and growing its buffer if needed.
+     * @param level The level
+     * @param value The value
+     */
+    private void append(int level, double value) {
+        if(level >= levels.length) {
+            // Merging a deeper sketch can skip levels, every level up to the new one needs a buffer
+            int created = levels.length;
+            levels = Arrays.copyOf(levels, level + 1);
+            sizes = Arrays.copyOf(sizes, level + 1);
+            for(int newLevel = created; newLevel <= level; newLevel++) {
+                levels[newLevel] = new double[k];
+            }
+        }
+        if(sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+        levels[level][sizes[level]++] = value;
+    }
+
+    /**
+     * Compact every level holding k or more values by promoting every second of its sorted values to the next level.
+     */
+    private void compact() {
+        for(int level = 0; level < levels.length; level++) {
+            if(sizes[level] < k) {
+                continue;
+            }
+            double[] values = levels[level];
+            int size = sizes[level];
+            Arrays.sort(values, 0, size);
+
+            // An odd value out stays on its level
+            int compacted = size - size % 2;
+            for(int i = promoteOdd ? 1 : 0; i < compacted; i += 2) {
+                append(level + 1, values[i]);
+            }
+            promoteOdd = !promoteOdd;
+
+            values[0] = values[compacted == size ? 0 : size - 1];
+            sizes[level] = size - compacted;
+            if(levels[level].length > k) {
+                levels[level] = Arrays.copyOf(levels[level], k);
+            }
+        }
+    }
+
+    /**
+     * Get the approximate value below which a fraction of all values lies.
+     * @param fraction The fraction between 0 and 1 (e.g. 0.5 for the median)
+     * @return The approximate quantile or NaN if the sketch is empty
+     */
+    public double getQuantile(double fraction) {
+        if(count == 0) {
+            return Double.NaN;
+        }
+
+        int retained = 0;
+        for(int size: sizes) {
+            retained += size;
+        }
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+
+        // Sort the retained values together with their weights
+        int n = 0;
+        for(int level = 0; level < levels.length; level++) {
+            for(int i = 0; i < sizes[level]; i++) {
+                values[n] = levels[level][i];
+                weights[n] = 1L << level;
+                n++;
+            }
+        }
+        Integer[] order = new Integer[retained];
+        for(int i = 0; i < retained; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        long totalWeight = 0;
+        for(long weight: weights) {
+            totalWeight += weight;
+        }
+        double rank = fraction * totalWeight;
+        long cumulative = 0;
+        for(Integer i: order) {
+            cumulative += weights[i];
+            if(cumulative >= rank) {
+                return values[i];
+            }
+        }
+        return values[order[retained - 1]];
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return sum / count;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,53 @@
+package de.dhbw.emotion_classifier;
+
+/**
+ * A RefitPolicy decides when a StreamingNormalizer recomputes its boundaries from its running statistics. Refitting can
+ * happen after a fixed number of rows, when the running mean drifted away from the mean of the last fit, or both.
+ */
+public class RefitPolicy {
+    private long interval;
+    private double drift;
+
+    /**
+     * Create a refit policy.
+     * @param interval Refit after this many rows since the last fit, 0 to never refit because of the row count
+     * @param drift Refit once the running mean differs from the mean of the last fit by more than this fraction of the
+     *              last fit's mean (e.g. 0.05 for 5 percent), 0 to never refit because of drift
+     */
+    public RefitPolicy(long interval, double drift) {
+        this.interval = interval;
+        this.drift = drift;
+    }
+
+    /**
+     * Create a policy that refits after a fixed number of rows.
+     * @param interval The number of rows between two fits
+     * @return The refit policy
+     */
+    public static RefitPolicy everyRows(long interval) {
+        return new RefitPolicy(interval, 0);
+    }
+
+    /**
+     * Create a policy that refits when the running mean drifts.
+     * @param drift The fraction of the last fit's mean the running mean may drift before refitting
+     * @return The refit policy
+     */
+    public static RefitPolicy onDrift(double drift) {
+        return new RefitPolicy(0, drift);
+    }
+
+    /**
+     * Decide whether the boundaries need to be recomputed.
+     * @param rowsSinceFit The number of rows added since the last fit
+     * @param mean The current running mean
+     * @param fittedMean The running mean at the last fit
+     * @return True if the normalizer should refit
+     */
+    public boolean shouldRefit(long rowsSinceFit, double mean, double fittedMean) {
+        if(interval > 0 && rowsSinceFit >= interval) {
+            return true;
+        }
+        return drift > 0 && Math.abs(mean - fittedMean) > drift * Math.abs(fittedMean);
+    }
+}
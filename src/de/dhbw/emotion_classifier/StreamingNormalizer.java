@@ -0,0 +1,102 @@
+package de.dhbw.emotion_classifier;
+
+/**
+ * The StreamingNormalizer sets its boundaries from running statistics instead of the whole dataset. Values are added
+ * one at a time as rows arrive, the minimum, maximum and sum are updated incrementally and the medium boundaries are
+ * recomputed whenever the RefitPolicy asks for it. Memory stays constant no matter how many rows are streamed, and
+ * values can be normalized before the full dataset exists.
+ *
+ * The boundaries follow the same rule as Normalizer's setBoundaries, so after streaming a whole column and refitting
+ * they match the ones of a normalizer fitted on the complete column.
+ */
+public class StreamingNormalizer extends Normalizer {
+    private RefitPolicy policy;
+
+    private double min = Double.MAX_VALUE;
+    private double max = Double.MIN_VALUE;
+    private double sum = 0;
+    private long count = 0;
+
+    /**
+     * Number of values added since the boundaries were computed the last time
+     */
+    private long rowsSinceFit = 0;
+
+    /**
+     * Running mean at the time the boundaries were computed the last time
+     */
+    private double fittedMean = 0;
+
+    /**
+     * Create a streaming normalizer. The boundaries are computed with the first value and then according to the policy.
+     * @param policy The policy deciding when the boundaries are recomputed
+     */
+    public StreamingNormalizer(RefitPolicy policy) {
+        super(0, 0);
+        this.policy = policy;
+    }
+
+    /**
+     * Add a raw data point value to the running statistics and refit the boundaries if the policy asks for it.
+     * @param value The raw data point value
+     * @return True if the boundaries were recomputed
+     */
+    public boolean update(double value) {
+        min = Double.min(min, value);
+        max = Double.max(max, value);
+        sum += value;
+        count++;
+        rowsSinceFit++;
+
+        if(count == 1 || policy.shouldRefit(rowsSinceFit, getMean(), fittedMean)) {
+            refit();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Add a raw data point value to the running statistics and normalize it with the boundaries that are valid
+     * afterwards.
+     * @param value The raw data point value
+     * @return The normalized category value of the provided data point
+     */
+    public int updateAndNormalize(double value) {
+        update(value);
+        return normalize(value);
+    }
+
+    /**
+     * Recompute the boundaries from the running statistics, regardless of the policy.
+     */
+    public void refit() {
+        double average = getMean();
+
+        // Set the lower boundary for medium and upper border of medium accordingly
+        this.minMedium = average - average * 1/3;
+        this.maxMedium = average + (max - average) * 1/3;
+
+        fittedMean = average;
+        rowsSinceFit = 0;
+    }
+
+    /**
+     * Get the mean of all values added so far.
+     * @return The running mean or NaN if no value was added yet
+     */
+    public double getMean() {
+        return sum / count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,85 @@
+package de.dhbw.emotion_classifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * The TableBuilder creates a classification category table row by row. Every category keeps a hash set of the
+ * normalized rows it already holds, so a duplicate row is detected in constant time instead of comparing it with every
+ * row of its category. Building a table is therefore linear in the number of pre-classified rows.
+ */
+public class TableBuilder {
+    /**
+     * A normalized row as a hash set key. Two keys are equal if their rows are equal according to Arrays.equals.
+     */
+    private static final class RowKey {
+        private final double[] row;
+        private final int hash;
+
+        private RowKey(double[] row) {
+            this.row = row;
+            this.hash = Arrays.hashCode(row);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof RowKey && Arrays.equals(row, ((RowKey) other).row);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private HashMap<String, ArrayList<double[]>> table = new HashMap<>();
+
+    /**
+     * The rows inside each category of the table
+     */
+    private HashMap<String, HashSet<RowKey>> rowKeys = new HashMap<>();
+
+    /**
+     * Add a row to a category unless the category already holds an identical row. New categories are created
+     * automatically.
+     * @param category Name of the category the row should be inserted in
+     * @param row Normalized input vector row. It is stored without copying and must not be changed afterwards.
+     * @return True if the row was added, false if it is a duplicate
+     */
+    public boolean addRow(String category, double[] row) {
+        HashSet<RowKey> categoryKeys = rowKeys.get(category);
+        if(categoryKeys == null) {
+            categoryKeys = new HashSet<>();
+            rowKeys.put(category, categoryKeys);
+            table.put(category, new ArrayList<>());
+        }
+
+        if(!categoryKeys.add(new RowKey(row))) {
+            return false;
+        }
+        table.get(category).add(row);
+        return true;
+    }
+
+    /**
+     * Check whether a category already holds a row, without adding it.
+     * @param category Name of the category
+     * @param row Normalized input vector row
+     * @return True if the category holds an identical row
+     */
+    public boolean containsRow(String category, double[] row) {
+        HashSet<RowKey> categoryKeys = rowKeys.get(category);
+        return categoryKeys != null && categoryKeys.contains(new RowKey(row));
+    }
+
+    /**
+     * Get the table built so far. Rows added afterwards also show up in the returned table.
+     * @return The classification table. Each classification category is stored under its own classification name.
+     * Multiple rows for a category are stored inside a list under the categorie's name.
+     */
+    public HashMap<String, ArrayList<double[]>> getTable() {
+        return table;
+    }
+}
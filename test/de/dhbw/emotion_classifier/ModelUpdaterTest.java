@@ -0,0 +1,176 @@
+package de.dhbw.emotion_classifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that a model extended by a ModelUpdater classifies exactly like a model created from all rows at once, that
+ * failed updates change nothing and that a model can only be extended by one updater. Run it with the compiled sources
+ * on the class path; it exits with status 1 if a check fails.
+ */
+public class ModelUpdaterTest {
+    private static final String[] CATEGORIES = {"anger", "joy", "sadness", "fear", "surprise"};
+    private static final int ROWS = 300;
+    private static final int COLUMNS = 3;
+
+    /**
+     * The rows the first model version is created from. The last category is only labelled behind them, so the updates
+     * also add a new category.
+     */
+    private static final int FIRST_ROWS = 60;
+
+    private static int failures = 0;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        Dataset rawData = new Dataset(COLUMNS);
+        String[] labels = new String[ROWS];
+        for(int rowId = 0; rowId < ROWS; rowId++) {
+            int category = random.nextInt(rowId < FIRST_ROWS ? CATEGORIES.length - 1 : CATEGORIES.length);
+            double[] row = new double[COLUMNS];
+            for(int column = 0; column < COLUMNS; column++) {
+                row[column] = random.nextGaussian() * 10 + category * 5;
+            }
+            rawData.addRow(row);
+            labels[rowId] = CATEGORIES[category];
+        }
+
+        ArrayList<Normalizer> normalizers = Normalizer.fitAll(rawData, false);
+
+        ClassificationModel rebuilt = createModel(rawData, labels, 0, ROWS, normalizers);
+
+        ModelUpdater updater = new ModelUpdater(createModel(rawData, labels, 0, FIRST_ROWS, normalizers), normalizers);
+        ClassificationModel first = updater.getModel();
+
+        // Failed updates must change neither the model nor the updater, so the same rows can be added afterwards
+        List<String> missingLabel = labelRange(labels, FIRST_ROWS, 180);
+        missingLabel.set(5, null);
+        checkRejected(updater, rowRange(rawData, FIRST_ROWS, 180), labelRange(labels, FIRST_ROWS, 179), "fewer labels than rows");
+        checkRejected(updater, rowRange(rawData, FIRST_ROWS, 180), missingLabel, "a missing label");
+        check(updater.getModel() == first, "Failed updates do not publish a model");
+
+        addRows(updater, rawData, labels, FIRST_ROWS, 180);
+        addRows(updater, rawData, labels, 180, ROWS);
+        ClassificationModel updated = updater.getModel();
+
+        check(updated.getSize() == rebuilt.getSize(), "Both models hold " + rebuilt.getSize() + " table rows, the updated one holds " + updated.getSize());
+        check(updated.getCategoryCount() == rebuilt.getCategoryCount(), "Both models hold all categories");
+        check(updated.getDataRowCount() == ROWS, "The updated model knows all input vectors");
+
+        for(int column = 0; column < COLUMNS; column++) {
+            for(int value = 1; value <= 3; value++) {
+                double expected = rebuilt.getEvidenceIndex().getEvidence(column, value);
+                double actual = updated.getEvidenceIndex().getEvidence(column, value);
+                check(Double.compare(expected, actual) == 0, "Evidence of column " + column + " and value " + value + ": expected " + expected + ", got " + actual);
+            }
+        }
+
+        // The table rows are ordered differently, so the plausibilities are compared by table row name
+        HashMap<String, Integer> updatedRows = new HashMap<>();
+        for(int rowId = 0; rowId < updated.getSize(); rowId++) {
+            updatedRows.put(updated.getRowName(rowId), rowId);
+        }
+
+        PackedVectors normalizedData = PackedVectors.normalize(rawData, normalizers, false, false);
+        double[] row = new double[COLUMNS];
+        double[] expected = new double[rebuilt.getSize()];
+        double[] actual = new double[updated.getSize()];
+        for(int rowId = 0; rowId < ROWS; rowId++) {
+            normalizedData.getRow(rowId, row);
+            BatchClassifier.classify(row, rebuilt, expected);
+            BatchClassifier.classify(row, updated, actual);
+
+            for(int tableRow = 0; tableRow < rebuilt.getSize(); tableRow++) {
+                String name = rebuilt.getRowName(tableRow);
+                Integer updatedRow = updatedRows.get(name);
+                check(updatedRow != null && Double.compare(expected[tableRow], actual[updatedRow]) == 0, "Plausibility of " + name + " for input vector " + rowId + " differs");
+            }
+        }
+
+        // The first version was already extended, another updater must not write into the shared arrays
+        ModelUpdater otherUpdater = new ModelUpdater(first, normalizers);
+        try {
+            addRows(otherUpdater, rawData, labels, 0, 10);
+            check(false, "A second updater of the same model is rejected");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        if(failures > 0) {
+            System.out.println(failures + " checks failed.");
+            System.exit(1);
+        }
+        System.out.println("All checks passed.");
+    }
+
+    /**
+     * Create a model from a range of the raw rows.
+     * @param rawData All raw input vectors
+     * @param labels The category label of every input vector
+     * @param fromRow The first row of the range
+     * @param toRow The row behind the range
+     * @param normalizers The normalizers of all features
+     * @return The model
+     */
+    private static ClassificationModel createModel(Dataset rawData, String[] labels, int fromRow, int toRow, ArrayList<Normalizer> normalizers) {
+        Dataset rows = new Dataset(COLUMNS);
+        HashMap<String, ArrayList<Integer>> categories = new HashMap<>();
+        for(int rowId = fromRow; rowId < toRow; rowId++) {
+            categories.computeIfAbsent(labels[rowId], category -> new ArrayList<>()).add(rows.getRowCount());
+            rows.addRow(rawData.getRow(rowId));
+        }
+
+        PackedVectors normalizedRows = PackedVectors.normalize(rows, normalizers, false, false);
+        return new ClassificationModel(normalizedRows, Classifier.createTable(normalizedRows, categories), categories, normalizers);
+    }
+
+    /**
+     * Add a range of the raw rows to the model of an updater.
+     * @param updater The updater
+     * @param rawData All raw input vectors
+     * @param labels The category label of every input vector
+     * @param fromRow The first row of the range
+     * @param toRow The row behind the range
+     */
+    private static void addRows(ModelUpdater updater, Dataset rawData, String[] labels, int fromRow, int toRow) {
+        updater.addLabelledRows(rowRange(rawData, fromRow, toRow), labelRange(labels, fromRow, toRow));
+    }
+
+    /**
+     * Check that an update is rejected with an IllegalArgumentException.
+     * @param updater The updater
+     * @param rows The raw rows of the update
+     * @param labels The labels of the update
+     * @param problem The problem of the update used in failure messages
+     */
+    private static void checkRejected(ModelUpdater updater, Dataset rows, List<String> labels, String problem) {
+        try {
+            updater.addLabelledRows(rows, labels);
+            check(false, "An update with " + problem + " is rejected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    private static Dataset rowRange(Dataset rawData, int fromRow, int toRow) {
+        Dataset rows = new Dataset(COLUMNS);
+        for(int rowId = fromRow; rowId < toRow; rowId++) {
+            rows.addRow(rawData.getRow(rowId));
+        }
+        return rows;
+    }
+
+    private static List<String> labelRange(String[] labels, int fromRow, int toRow) {
+        return new ArrayList<>(Arrays.asList(labels).subList(fromRow, toRow));
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition) {
+            System.out.println("Failed: " + message);
+            failures++;
+        }
+    }
+}
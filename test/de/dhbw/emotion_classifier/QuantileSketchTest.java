@@ -0,0 +1,86 @@
+package de.dhbw.emotion_classifier;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks that QuantileSketches of shards with different sizes can be merged, both into an empty sketch and into
+ * sketches that have fewer levels than the merged ones. Run it with the compiled sources on the class path; it exits
+ * with status 1 if a check fails.
+ */
+public class QuantileSketchTest {
+    /**
+     * The number of values of each shard. The shards get sketches of very different depths.
+     */
+    private static final int[] SHARD_SIZES = {3000, 7, 500000, 3000, 0, 120000, 1};
+
+    private static int failures = 0;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        int total = 0;
+        for(int shardSize: SHARD_SIZES) {
+            total += shardSize;
+        }
+
+        double[] allValues = new double[total];
+        QuantileSketch[] shardSketches = new QuantileSketch[SHARD_SIZES.length];
+        int n = 0;
+        for(int shard = 0; shard < SHARD_SIZES.length; shard++) {
+            shardSketches[shard] = new QuantileSketch();
+            for(int i = 0; i < SHARD_SIZES[shard]; i++) {
+                double value = random.nextGaussian() * 10 + shard;
+                shardSketches[shard].add(value);
+                allValues[n++] = value;
+            }
+        }
+        Arrays.sort(allValues);
+
+        // Merged in file order, so shallow sketches receive deeper ones
+        QuantileSketch inOrder = new QuantileSketch();
+        for(QuantileSketch shardSketch: shardSketches) {
+            inOrder.merge(shardSketch);
+        }
+        checkSketch("Shards merged in order", inOrder, allValues);
+
+        // Merged into the sketch of the smallest non-empty shard
+        QuantileSketch intoSmallest = new QuantileSketch();
+        intoSmallest.add(shardSketches[6].getMin());
+        for(int shard = 0; shard < shardSketches.length - 1; shard++) {
+            intoSmallest.merge(shardSketches[shard]);
+        }
+        checkSketch("Shards merged into the smallest one", intoSmallest, allValues);
+
+        if(failures > 0) {
+            System.out.println(failures + " checks failed.");
+            System.exit(1);
+        }
+        System.out.println("All checks passed.");
+    }
+
+    /**
+     * Compare the statistics and quartiles of a merged sketch with the exact ones of all values.
+     * @param name The name of the case used in failure messages
+     * @param sketch The merged sketch
+     * @param sortedValues All values in ascending order
+     */
+    private static void checkSketch(String name, QuantileSketch sketch, double[] sortedValues) {
+        check(sketch.getCount() == sortedValues.length, name + ": count " + sketch.getCount() + " instead of " + sortedValues.length);
+        check(sketch.getMin() == sortedValues[0], name + ": wrong minimum");
+        check(sketch.getMax() == sortedValues[sortedValues.length - 1], name + ": wrong maximum");
+
+        for(double fraction: new double[]{0.25, 0.5, 0.75}) {
+            double quantile = sketch.getQuantile(fraction);
+            int rank = Arrays.binarySearch(sortedValues, quantile);
+            double rankError = Math.abs((double) Math.abs(rank) / sortedValues.length - fraction);
+            check(rankError < 0.02, name + ": quantile " + fraction + " is off by a rank fraction of " + rankError);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if(!condition) {
+            System.out.println("Failed: " + message);
+            failures++;
+        }
+    }
+}